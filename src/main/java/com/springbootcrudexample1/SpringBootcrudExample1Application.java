@@ -3,6 +3,8 @@ package com.springbootcrudexample1;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import reactor.core.scheduler.Schedulers;
+
 /**
  * <h2>This class implements a micro-service application for database services.</h2>
  *  This class provides the capabilities for database access, CRUD(Create, Read, Update, Delete).
@@ -18,6 +20,8 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 public class SpringBootcrudExample1Application {
 	// main is the entry point of the application.
 	public static void main(String[] args) {
+		// The Reactor schedulers publish their task counts and durations with the other metrics.
+		Schedulers.enableMetrics();
 		SpringApplication.run(SpringBootcrudExample1Application.class, args);
 	}
 }
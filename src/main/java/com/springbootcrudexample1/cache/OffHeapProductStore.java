@@ -0,0 +1,592 @@
+package com.springbootcrudexample1.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.springbootcrudexample1.event.ProductEventPublisher;
+import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.model.ProductEvent;
+import com.springbootcrudexample1.repository.IProductRepository;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * <h2>This class keeps a replica of all of the products off the heap.</h2>
+ * The products are appended as compact binary records to direct ByteBuffer
+ * segments of "products.off-heap-store.segment-size", and found by id through
+ * an open-addressing hash table of record addresses, a long[]. A ProductDto is
+ * only decoded when a product is read, so the heap holds the table, not the
+ * catalog. A record is laid out as:
+ *
+ * <pre>
+ * live (1 byte) | price (8) | version (8, Long.MIN_VALUE if null)
+ * | id length (2) | id | productNum length (2, 0xFFFF if null) | productNum
+ * | name length (2, 0xFFFF if null) | name
+ * </pre>
+ *
+ * The strings are UTF-8. An update appends a new record and marks the old one
+ * dead; the segments are compacted once the dead records outweigh the live
+ * ones. The store is loaded once the application is ready and kept current by
+ * the product events; the events received during the load are applied after
+ * it. A "reloaded" event, of many products changed at once, empties the store,
+ * so the products are read from MongoDB until it is loaded again. The store is
+ * only created when "products.off-heap-store.enabled" is true, and needs a
+ * -XX:MaxDirectMemorySize large enough for the catalog.
+ *
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "products.off-heap-store.enabled", havingValue = "true")
+public class OffHeapProductStore {
+	private static final long EMPTY = 0L;
+	private static final long REMOVED = -1L;
+	private static final int NULL_LENGTH = 0xFFFF;
+	private static final int HEADER_BYTES = 1 + 8 + 8;
+
+	@Autowired
+	private IProductRepository repository;
+
+	@Autowired
+	private ProductEventPublisher events;
+
+	@Value("${products.off-heap-store.segment-size:64MB}")
+	private DataSize segmentSize;
+
+	@Value("${products.stream.cursor-batch-size:256}")
+	private int cursorBatchSize;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final List<ProductEvent> pending = new ArrayList<>();
+	private List<ByteBuffer> segments = new ArrayList<>();
+	private long[] table = new long[1024];
+	private int size;
+	private int usedSlots;
+	private long liveBytes;
+	private long garbageBytes;
+	private long heapEstimateBytes;
+	private volatile boolean ready;
+	private Disposable subscription;
+	private Disposable loading;
+	private long loads;
+
+	/**
+	 * This method starts following the product events, then streams all of
+	 * the products into the store.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		subscription = events.events().onBackpressureBuffer().publishOn(Schedulers.single()).subscribe(this::apply,
+				ex -> log.error("Off-heap product store stopped following the product events", ex));
+		load();
+	}
+
+	/**
+	 * This method stops following the product events.
+	 */
+	@PreDestroy
+	public synchronized void stop() {
+		if (subscription != null) {
+			subscription.dispose();
+		}
+		if (loading != null) {
+			loading.dispose();
+		}
+	}
+
+	/**
+	 * This method streams all of the products into the store, in place of a
+	 * load in progress: only the products of the last load started are put.
+	 */
+	private synchronized void load() {
+		long load = ++loads;
+		if (loading != null) {
+			loading.dispose();
+		}
+		loading = repository.streamAll(cursorBatchSize).doOnNext(productDto -> put(productDto, load)).count()
+				.subscribe(count -> {
+					if (loaded(load)) {
+						log.info("Off-heap product store loaded with {} products", count);
+					}
+				}, ex -> log.error("Could not load the off-heap product store, the products are read from MongoDB",
+						ex));
+	}
+
+	private synchronized void put(ProductDto productDto, long load) {
+		if (load == loads) {
+			put(productDto);
+		}
+	}
+
+	private synchronized boolean loaded(long load) {
+		if (load != loads) {
+			return false;
+		}
+		loaded();
+		return true;
+	}
+
+	/**
+	 * This method tells whether the products have been loaded.
+	 *
+	 * @return True once the store answers the reads.
+	 */
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * This method finds the product with the given id.
+	 *
+	 * @param id The product id.
+	 * @return The product, decoded from its record, or empty if there is none.
+	 */
+	public Mono<ProductDto> get(String id) {
+		return Mono.fromSupplier(() -> find(id));
+	}
+
+	/**
+	 * This method streams all of the products, as they are when the stream is
+	 * subscribed: the addresses of the live records are copied then, and each
+	 * product is decoded when it is requested. A record stays readable once it
+	 * is dead, and its segment once it is compacted, so a product changed
+	 * during the stream is streamed once, as it was.
+	 *
+	 * @return All of the products.
+	 */
+	public Flux<ProductDto> all() {
+		return Flux.defer(() -> {
+			List<ByteBuffer> captured;
+			long[] addresses;
+			lock.readLock().lock();
+			try {
+				captured = new ArrayList<>(segments);
+				addresses = new long[size];
+				int count = 0;
+				for (long address : table) {
+					if (address != EMPTY && address != REMOVED) {
+						addresses[count++] = address;
+					}
+				}
+			} finally {
+				lock.readLock().unlock();
+			}
+			return Flux.range(0, addresses.length).map(
+					i -> decode(captured.get((int) ((addresses[i] - 1) >>> 32)), offset(addresses[i])));
+		});
+	}
+
+	/**
+	 * This method puts a product in the store, replacing the one with the same
+	 * id.
+	 *
+	 * @param productDto The product.
+	 * @throws IllegalArgumentException If a field or the record is too large.
+	 */
+	public void put(ProductDto productDto) {
+		byte[] id = productDto.getId().getBytes(StandardCharsets.UTF_8);
+		byte[] productNum = utf8(productDto.getProductNum());
+		byte[] name = utf8(productDto.getName());
+		checkLength(id);
+		checkLength(productNum);
+		checkLength(name);
+		int length = HEADER_BYTES + 6 + id.length + (productNum == null ? 0 : productNum.length)
+				+ (name == null ? 0 : name.length);
+		if (length > segmentSize.toBytes()) {
+			throw new IllegalArgumentException("Product record of " + length + " bytes exceeds the segment size");
+		}
+
+		lock.writeLock().lock();
+		try {
+			int slot = slotOf(id);
+			if (table[slot] == EMPTY) {
+				size++;
+				usedSlots++;
+			} else {
+				kill(table[slot]);
+			}
+			table[slot] = append(id, productNum, name, productDto.getPrice(), productDto.getVersion());
+			if (usedSlots * 2 > table.length) {
+				rehash(capacityFor(size));
+			}
+			compactIfWasteful();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * This method removes the product with the given id from the store.
+	 *
+	 * @param id The product id.
+	 */
+	public void remove(String id) {
+		byte[] key = id.getBytes(StandardCharsets.UTF_8);
+
+		lock.writeLock().lock();
+		try {
+			int slot = slotOf(key);
+			if (table[slot] != EMPTY) {
+				kill(table[slot]);
+				table[slot] = REMOVED;
+				size--;
+				compactIfWasteful();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * This method reports the memory of the store: the off-heap bytes per
+	 * product, records and hash table, against an estimate of the heap bytes
+	 * of the same products as ProductDto objects, with compressed references
+	 * and compact strings.
+	 *
+	 * @return The number of products, the bytes of the segments and the bytes per product.
+	 */
+	public Map<String, Object> stats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+
+		lock.readLock().lock();
+		try {
+			stats.put("ready", ready);
+			stats.put("products", size);
+			stats.put("segments", segments.size());
+			stats.put("allocatedBytes", (long) segments.size() * segmentSize.toBytes());
+			stats.put("liveBytes", liveBytes);
+			stats.put("garbageBytes", garbageBytes);
+			stats.put("bytesPerProduct", size == 0 ? 0.0 : (double) liveBytes / size);
+			stats.put("indexBytesPerProduct", size == 0 ? 0.0 : 8.0 * table.length / size);
+			stats.put("heapBytesPerProduct", size == 0 ? 0.0 : (double) heapEstimateBytes / size);
+		} finally {
+			lock.readLock().unlock();
+		}
+		return stats;
+	}
+
+	/**
+	 * This method applies a product event to the store, or keeps it until the
+	 * store is loaded. A "reloaded" event empties the store and loads it again.
+	 *
+	 * @param event The change of the product.
+	 */
+	synchronized void apply(ProductEvent event) {
+		if (ProductEvent.RELOADED.equals(event.getType())) {
+			// The events received from now on are newer than the products loaded.
+			ready = false;
+			pending.clear();
+			clear();
+			load();
+		} else if (ready) {
+			write(event);
+		} else {
+			pending.add(event);
+		}
+	}
+
+	/**
+	 * This method applies the events received during the load, which are
+	 * newer than the products loaded, and opens the store to the reads.
+	 */
+	synchronized void loaded() {
+		pending.forEach(this::write);
+		pending.clear();
+		ready = true;
+	}
+
+	private void write(ProductEvent event) {
+		if (event.getProduct() == null) {
+			remove(event.getId());
+		} else {
+			put(event.getProduct());
+		}
+	}
+
+	/**
+	 * This method removes all of the products, and frees their segments once
+	 * the streams reading them complete.
+	 */
+	private void clear() {
+		lock.writeLock().lock();
+		try {
+			segments = new ArrayList<>();
+			table = new long[1024];
+			size = 0;
+			usedSlots = 0;
+			liveBytes = 0;
+			garbageBytes = 0;
+			heapEstimateBytes = 0;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private ProductDto find(String id) {
+		byte[] key = id.getBytes(StandardCharsets.UTF_8);
+
+		lock.readLock().lock();
+		try {
+			long address = table[slotOf(key)];
+			return address == EMPTY ? null : decode(segment(address), offset(address));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * This method finds the slot of the given id, or the empty slot where it
+	 * would be put. The removed slots are skipped, they are dropped by the next
+	 * rehash.
+	 */
+	private int slotOf(byte[] key) {
+		int mask = table.length - 1;
+		int slot = hash(key) & mask;
+		while (table[slot] != EMPTY) {
+			if (table[slot] != REMOVED && idEquals(table[slot], key)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private boolean idEquals(long address, byte[] key) {
+		ByteBuffer segment = segment(address);
+		int position = offset(address) + HEADER_BYTES;
+		if ((segment.getShort(position) & 0xFFFF) != key.length) {
+			return false;
+		}
+		for (int i = 0; i < key.length; i++) {
+			if (segment.get(position + 2 + i) != key[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private long append(byte[] id, byte[] productNum, byte[] name, double price, Long version) {
+		int length = HEADER_BYTES + 6 + id.length + (productNum == null ? 0 : productNum.length)
+				+ (name == null ? 0 : name.length);
+		int segmentBytes = (int) segmentSize.toBytes();
+
+		ByteBuffer segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+		if (segment == null || segment.remaining() < length) {
+			segment = ByteBuffer.allocateDirect(segmentBytes);
+			segments.add(segment);
+		}
+		int offset = segment.position();
+		segment.put((byte) 1).putDouble(price).putLong(version == null ? Long.MIN_VALUE : version);
+		putString(segment, id);
+		putString(segment, productNum);
+		putString(segment, name);
+
+		liveBytes += length;
+		heapEstimateBytes += heapBytes(segment, offset);
+		return address(segments.size() - 1, offset);
+	}
+
+	/**
+	 * This method marks the record at the given address dead.
+	 */
+	private void kill(long address) {
+		ByteBuffer segment = segment(address);
+		int offset = offset(address);
+		int length = recordLength(segment, offset);
+
+		segment.put(offset, (byte) 0);
+		liveBytes -= length;
+		garbageBytes += length;
+		heapEstimateBytes -= heapBytes(segment, offset);
+	}
+
+	/**
+	 * This method copies the live records to new segments once the dead ones
+	 * take more room than them, and at least a segment.
+	 */
+	private void compactIfWasteful() {
+		if (garbageBytes < segmentSize.toBytes() || garbageBytes < liveBytes) {
+			return;
+		}
+		List<ByteBuffer> oldSegments = segments;
+		long[] oldTable = table;
+		segments = new ArrayList<>();
+		table = new long[capacityFor(size)];
+		usedSlots = 0;
+		liveBytes = 0;
+		garbageBytes = 0;
+		heapEstimateBytes = 0;
+
+		for (long address : oldTable) {
+			if (address != EMPTY && address != REMOVED) {
+				ByteBuffer segment = oldSegments.get((int) ((address - 1) >>> 32));
+				int offset = offset(address);
+				ProductDto productDto = decode(segment, offset);
+				long copied = append(productDto.getId().getBytes(StandardCharsets.UTF_8),
+						utf8(productDto.getProductNum()), utf8(productDto.getName()), productDto.getPrice(),
+						productDto.getVersion());
+				insert(copied);
+			}
+		}
+		log.info("Off-heap product store compacted from {} to {} segments", oldSegments.size(), segments.size());
+	}
+
+	private void rehash(int capacity) {
+		long[] oldTable = table;
+		table = new long[capacity];
+		usedSlots = 0;
+		for (long address : oldTable) {
+			if (address != EMPTY && address != REMOVED) {
+				insert(address);
+			}
+		}
+	}
+
+	/**
+	 * This method puts the address of a record, whose id is not in the table,
+	 * in the first empty slot.
+	 */
+	private void insert(long address) {
+		ByteBuffer segment = segment(address);
+		int position = offset(address) + HEADER_BYTES;
+		int mask = table.length - 1;
+		int slot = hash(segment, position + 2, segment.getShort(position) & 0xFFFF) & mask;
+		while (table[slot] != EMPTY) {
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = address;
+		usedSlots++;
+	}
+
+	private ByteBuffer segment(long address) {
+		return segments.get((int) ((address - 1) >>> 32));
+	}
+
+	private static int offset(long address) {
+		return (int) (address - 1);
+	}
+
+	// The address is shifted by one, so that no record has the address of an empty slot.
+	private static long address(int segment, int offset) {
+		return (((long) segment << 32) | offset) + 1;
+	}
+
+	private static int capacityFor(int size) {
+		int capacity = 1024;
+		while (capacity < size * 4L) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private static ProductDto decode(ByteBuffer segment, int offset) {
+		double price = segment.getDouble(offset + 1);
+		long version = segment.getLong(offset + 9);
+		int position = offset + HEADER_BYTES;
+		String id = readString(segment, position);
+		position = skipString(segment, position);
+		String productNum = readString(segment, position);
+		position = skipString(segment, position);
+		String name = readString(segment, position);
+
+		return new ProductDto(id, productNum, name, price, version == Long.MIN_VALUE ? null : version);
+	}
+
+	private static int recordLength(ByteBuffer segment, int offset) {
+		int position = offset + HEADER_BYTES;
+		for (int i = 0; i < 3; i++) {
+			position = skipString(segment, position);
+		}
+		return position - offset;
+	}
+
+	/**
+	 * This method estimates the heap bytes of the record as a ProductDto: the
+	 * object, each String and its byte[], and the boxed version.
+	 */
+	private static long heapBytes(ByteBuffer segment, int offset) {
+		long bytes = 40;
+		int position = offset + HEADER_BYTES;
+		for (int i = 0; i < 3; i++) {
+			int length = segment.getShort(position) & 0xFFFF;
+			if (length != NULL_LENGTH) {
+				bytes += 24 + ((16 + length + 7) & ~7);
+			}
+			position = skipString(segment, position);
+		}
+		return segment.getLong(offset + 9) == Long.MIN_VALUE ? bytes : bytes + 16;
+	}
+
+	private static byte[] utf8(String value) {
+		return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void checkLength(byte[] value) {
+		if (value != null && value.length >= NULL_LENGTH) {
+			throw new IllegalArgumentException("Product field of " + value.length + " bytes is too large");
+		}
+	}
+
+	private static void putString(ByteBuffer segment, byte[] value) {
+		if (value == null) {
+			segment.putShort((short) NULL_LENGTH);
+		} else {
+			segment.putShort((short) value.length).put(value);
+		}
+	}
+
+	private static String readString(ByteBuffer segment, int position) {
+		int length = segment.getShort(position) & 0xFFFF;
+		if (length == NULL_LENGTH) {
+			return null;
+		}
+		byte[] value = new byte[length];
+		segment.get(position + 2, value);
+		return new String(value, StandardCharsets.UTF_8);
+	}
+
+	private static int skipString(ByteBuffer segment, int position) {
+		int length = segment.getShort(position) & 0xFFFF;
+		return position + 2 + (length == NULL_LENGTH ? 0 : length);
+	}
+
+	// FNV-1a of the UTF-8 bytes of the id, the same from a byte[] and from a record.
+	private static int hash(byte[] bytes) {
+		int hash = 0x811c9dc5;
+		for (byte b : bytes) {
+			hash = (hash ^ (b & 0xFF)) * 0x01000193;
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	private static int hash(ByteBuffer segment, int position, int length) {
+		int hash = 0x811c9dc5;
+		for (int i = 0; i < length; i++) {
+			hash = (hash ^ (segment.get(position + i) & 0xFF)) * 0x01000193;
+		}
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,100 @@
+package com.springbootcrudexample1.cache;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.springbootcrudexample1.model.ProductDto;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * <h2>This class caches the products read by id.</h2>
+ * The cache is bounded by "products.cache.maximum-size" and entries expire
+ * "products.cache.expire-after-write" after they are loaded or updated.
+ * Concurrent misses for the same id share a single load.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Component
+public class ProductCache {
+	private final AsyncCache<String, ProductDto> cache;
+
+	/**
+	 * This constructor builds the cache.
+	 * 
+	 * @param maximumSize      The maximum number of products in the cache.
+	 * @param expireAfterWrite The time after which a cached product is read again.
+	 */
+	public ProductCache(@Value("${products.cache.maximum-size:100000}") long maximumSize,
+			@Value("${products.cache.expire-after-write:PT5M}") Duration expireAfterWrite) {
+		cache = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(expireAfterWrite).recordStats()
+				.buildAsync();
+	}
+
+	/**
+	 * This method gets the product with the given id, loading it on a miss. A
+	 * product which does not exist is not cached.
+	 * 
+	 * @param id     The product id.
+	 * @param loader The load of the product, subscribed once per miss.
+	 * @return The product, or empty if it does not exist.
+	 */
+	public Mono<ProductDto> get(String id, Function<String, Mono<ProductDto>> loader) {
+		// The dependent future keeps a cancelled subscriber from cancelling the shared load.
+		return Mono.fromFuture(
+				() -> cache.get(id, (key, executor) -> loader.apply(key).toFuture()).thenApply(Function.identity()));
+	}
+
+	/**
+	 * This method puts a product, just written, in the cache.
+	 * 
+	 * @param productDto The product.
+	 */
+	public void put(ProductDto productDto) {
+		cache.put(productDto.getId(), CompletableFuture.completedFuture(productDto));
+	}
+
+	/**
+	 * This method removes a product from the cache.
+	 * 
+	 * @param id The product id.
+	 */
+	public void invalidate(String id) {
+		cache.synchronous().invalidate(id);
+	}
+
+	/**
+	 * This method removes all of the products from the cache.
+	 */
+	public void invalidateAll() {
+		cache.synchronous().invalidateAll();
+	}
+
+	/**
+	 * This method gets the hit, miss and eviction statistics of the cache.
+	 * 
+	 * @return The cache statistics.
+	 */
+	public CacheStats stats() {
+		return cache.synchronous().stats();
+	}
+
+	/**
+	 * This method gets the number of products in the cache.
+	 * 
+	 * @return The approximate number of cached products.
+	 */
+	public long size() {
+		return cache.synchronous().estimatedSize();
+	}
+}
@@ -0,0 +1,221 @@
+package com.springbootcrudexample1.cache;
+
+import java.time.Duration;
+
+import javax.annotation.PreDestroy;
+
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.MongoServerException;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.springbootcrudexample1.event.ProductEventPublisher;
+import com.springbootcrudexample1.model.Product;
+import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.model.ProductEvent;
+import com.springbootcrudexample1.utils.AppUtils;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * <h2>This class keeps the product cache coherent across the instances.</h2>
+ * The listener watches the change stream of the product collection, so the
+ * writes made by any instance of the service update or remove the product in
+ * the cache of this instance, and are published as product events. The last resume token is saved, every
+ * "products.cache.change-stream.token-save-interval", under the id
+ * "products.cache.change-stream.node-id", so that a restart resumes the stream
+ * where it stopped. Change streams need a replica set, so the listener is only
+ * created when "products.cache.change-stream.enabled" is true.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "products.cache.change-stream.enabled", havingValue = "true")
+public class ProductChangeStreamListener {
+	private static final String RESUME_TOKEN_COLLECTION = "productss_resume_tokens";
+	// The MongoDB error codes of a change stream which cannot be resumed.
+	private static final int INVALID_RESUME_TOKEN = 260;
+	private static final int CHANGE_STREAM_FATAL_ERROR = 280;
+	private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+
+	@Autowired
+	private ReactiveMongoTemplate template;
+
+	@Autowired
+	private ProductCache productCache;
+
+	@Autowired
+	private ProductEventPublisher events;
+
+	@Value("${products.cache.change-stream.node-id:${HOSTNAME:local}}")
+	private String nodeId;
+
+	@Value("${products.cache.change-stream.token-save-interval:PT1S}")
+	private Duration tokenSaveInterval;
+
+	private volatile BsonValue resumeToken;
+	private Disposable subscription;
+
+	/**
+	 * This method starts listening to the change stream, from the saved resume
+	 * token if there is one. The token is loaded once; the stream is opened
+	 * again, from the last token received, whenever it fails, and from now on
+	 * whenever it ends, after an invalidate event, or cannot be resumed.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		subscription = loadResumeToken().doOnNext(token -> resumeToken = token)
+				.onErrorResume(ex -> {
+					log.warn("Could not load the product change stream resume token, listening from now on", ex);
+					return Mono.empty();
+				})
+				.thenMany(Flux.defer(this::listen)
+						.repeatWhen(completed -> completed.delayElements(Duration.ofSeconds(1)))
+						.retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+								.maxBackoff(Duration.ofMinutes(1)).transientErrors(true).doBeforeRetry(signal -> log
+										.warn("Product change stream failed, resuming", signal.failure()))))
+				.sample(tokenSaveInterval).concatMap(this::saveResumeToken)
+				.subscribe(null, ex -> log.error("Product change stream stopped", ex));
+	}
+
+	/**
+	 * This method stops listening to the change stream.
+	 */
+	@PreDestroy
+	public void stop() {
+		if (subscription != null) {
+			subscription.dispose();
+		}
+	}
+
+	/**
+	 * This method applies a change of the product collection to the cache.
+	 * 
+	 * @param operationType The operation of the change.
+	 * @param id            The id of the changed product.
+	 * @param product       The product after the change, or null if it has been removed.
+	 */
+	void apply(OperationType operationType, String id, Product product) {
+		if (operationType == null) {
+			return;
+		}
+		switch (operationType) {
+		case INSERT:
+		case UPDATE:
+		case REPLACE:
+			if (product != null) {
+				ProductDto productDto = AppUtils.entityToDto(product);
+				productCache.put(productDto);
+				events.publishFromChangeStream(new ProductEvent(
+						operationType == OperationType.INSERT ? ProductEvent.CREATED : ProductEvent.UPDATED, id,
+						productDto));
+			} else {
+				// The product has been removed since, its delete follows.
+				productCache.invalidate(id);
+			}
+			break;
+		case DELETE:
+			productCache.invalidate(id);
+			events.publishFromChangeStream(new ProductEvent(ProductEvent.DELETED, id, null));
+			break;
+		default:
+			// The collection has been dropped or renamed, nothing cached can be trusted.
+			productCache.invalidateAll();
+			events.publishFromChangeStream(new ProductEvent(ProductEvent.RELOADED, null, null));
+		}
+	}
+
+	/**
+	 * This method opens the change stream after the last resume token, and
+	 * applies each change to the cache. When the token cannot be resumed, as
+	 * its changes are no longer in the oplog, the stream ends without it, to
+	 * be opened again from now on, and the cache is emptied since the changes
+	 * in between are lost.
+	 * 
+	 * @return The resume token of each change.
+	 */
+	private Flux<BsonValue> listen() {
+		BsonValue token = resumeToken;
+
+		return template.changeStream(Product.class).withOptions(options -> {
+			options.fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+			if (token != null) {
+				options.resumeAfter(token);
+			}
+		}).watchCollection(template.getCollectionName(Product.class)).listen().doOnNext(this::handle)
+				// After an invalidate event the stream cannot be resumed, it is opened again from now on.
+				.doOnNext(event -> resumeToken = event.getOperationType() == OperationType.INVALIDATE ? null
+						: event.getResumeToken())
+				.filter(event -> event.getOperationType() != OperationType.INVALIDATE)
+				.map(ChangeStreamEvent::getResumeToken)
+				.onErrorResume(ex -> token != null && cannotResume(ex), ex -> {
+					log.warn("Product change stream cannot be resumed, listening from now on", ex);
+					resumeToken = null;
+					apply(OperationType.INVALIDATE, null, null);
+					return Flux.empty();
+				});
+	}
+
+	/**
+	 * This method tells whether a change stream failed because its resume token
+	 * is no longer valid, so opening it again with the token fails the same way.
+	 * 
+	 * @param ex The failure of the change stream.
+	 * @return True for an invalid resume token or a lost change stream history.
+	 */
+	static boolean cannotResume(Throwable ex) {
+		for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+			if (cause instanceof MongoServerException) {
+				int code = ((MongoServerException) cause).getCode();
+				return code == INVALID_RESUME_TOKEN || code == CHANGE_STREAM_FATAL_ERROR
+						|| code == CHANGE_STREAM_HISTORY_LOST;
+			}
+		}
+		return false;
+	}
+
+	private void handle(ChangeStreamEvent<Product> event) {
+		BsonDocument documentKey = event.getRaw() == null ? null : event.getRaw().getDocumentKey();
+		BsonValue id = documentKey == null ? null : documentKey.get("_id");
+		String productId = id == null ? null
+				: id.isObjectId() ? id.asObjectId().getValue().toHexString()
+						: id.isString() ? id.asString().getValue() : id.toString();
+
+		apply(event.getOperationType(), productId, event.getBody());
+	}
+
+	private Mono<BsonValue> loadResumeToken() {
+		return template.getCollection(RESUME_TOKEN_COLLECTION)
+				.flatMap(collection -> Mono.from(collection.find(Filters.eq("_id", nodeId)).first()))
+				.map(document -> BsonDocument.parse(document.getString("token")));
+	}
+
+	private Mono<Void> saveResumeToken(BsonValue token) {
+		Document document = new Document("_id", nodeId).append("token", token.asDocument().toJson());
+
+		return template.getCollection(RESUME_TOKEN_COLLECTION)
+				.flatMap(collection -> Mono.from(collection.replaceOne(Filters.eq("_id", nodeId), document,
+						new ReplaceOptions().upsert(true))))
+				.then();
+	}
+}
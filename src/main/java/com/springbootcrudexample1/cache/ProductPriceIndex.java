@@ -0,0 +1,281 @@
+package com.springbootcrudexample1.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.springbootcrudexample1.event.ProductEventPublisher;
+import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.model.ProductEvent;
+import com.springbootcrudexample1.repository.IProductRepository;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * <h2>This class keeps all of the products in memory, sorted by price.</h2>
+ * The prices are held in a sorted double[], and the products in a parallel
+ * array, so a price range is found by two binary searches and streamed
+ * without reading MongoDB. The index is loaded once the application is ready,
+ * and kept current by the product events: a change is held in a small map,
+ * which takes precedence over the sorted arrays, until
+ * "products.price-index.merge-threshold" changes are merged into new arrays.
+ *
+ * Each query reads one snapshot of the arrays and changes, so a merge never
+ * shows a product twice or hides it: a change copies the map of changes into
+ * a new snapshot, the map of a snapshot is never modified. A "reloaded" event, of many products
+ * changed at once, empties the index, so the price ranges are read from
+ * MongoDB until it is loaded again. The index is only created when
+ * "products.price-index.enabled" is true, as it holds the whole catalog.
+ *
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "products.price-index.enabled", havingValue = "true")
+public class ProductPriceIndex {
+	// The change of a deleted product.
+	private static final ProductDto REMOVED = new ProductDto();
+
+	@Autowired
+	private IProductRepository repository;
+
+	@Autowired
+	private ProductEventPublisher events;
+
+	@Value("${products.price-index.merge-threshold:2000}")
+	private int mergeThreshold;
+
+	@Value("${products.stream.cursor-batch-size:256}")
+	private int cursorBatchSize;
+
+	private volatile Snapshot snapshot = new Snapshot(new double[0], new ProductDto[0], Map.of());
+	private volatile boolean ready;
+	private Disposable subscription;
+	private Disposable loading;
+	private long loads;
+
+	/**
+	 * This method starts following the product events, then loads the
+	 * products. The events received during the load are kept as changes, so no
+	 * write is missed.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		subscription = events.events().onBackpressureBuffer().publishOn(Schedulers.single()).subscribe(this::apply,
+				ex -> log.error("Product price index stopped following the product events", ex));
+		load();
+	}
+
+	/**
+	 * This method stops following the product events.
+	 */
+	@PreDestroy
+	public synchronized void stop() {
+		if (subscription != null) {
+			subscription.dispose();
+		}
+		if (loading != null) {
+			loading.dispose();
+		}
+	}
+
+	/**
+	 * This method loads all of the products, in place of a load in progress:
+	 * only the last load started builds the arrays.
+	 */
+	private synchronized void load() {
+		long load = ++loads;
+		if (loading != null) {
+			loading.dispose();
+		}
+		loading = repository.streamAll(cursorBatchSize).collectList().subscribe(products -> loaded(products, load),
+				ex -> log.error("Could not load the product price index, the price ranges are read from MongoDB", ex));
+	}
+
+	private synchronized void loaded(List<ProductDto> products, long load) {
+		if (load == loads) {
+			build(products);
+			log.info("Product price index loaded with {} products", products.size());
+		}
+	}
+
+	/**
+	 * This method tells whether the products have been loaded.
+	 *
+	 * @return True once the index answers the price ranges.
+	 */
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * This method builds the sorted arrays from all of the products. The
+	 * changes received so far are kept, as they are newer than the products.
+	 *
+	 * @param products All of the products.
+	 */
+	public synchronized void build(List<ProductDto> products) {
+		ProductDto[] sorted = products.toArray(new ProductDto[0]);
+		Arrays.sort(sorted, Comparator.comparingDouble(ProductDto::getPrice));
+		double[] prices = new double[sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			prices[i] = sorted[i].getPrice();
+		}
+
+		snapshot = new Snapshot(prices, sorted, snapshot.changes);
+		ready = true;
+	}
+
+	/**
+	 * This method finds the products between a price range: the products of
+	 * the sorted arrays which have not changed since, then the changed ones.
+	 *
+	 * @param min The minimum price.
+	 * @param max The maximum price.
+	 * @return The products between the price range, not sorted.
+	 */
+	public Flux<ProductDto> findByPriceBetween(double min, double max) {
+		return Flux.defer(() -> {
+			Snapshot current = snapshot;
+			Map<String, ProductDto> changes = current.changes;
+			int from = firstAtLeast(current.prices, min);
+			int to = firstAbove(current.prices, max);
+
+			return Flux.range(from, Math.max(0, to - from)).map(i -> current.products[i])
+					.filter(productDto -> changes.isEmpty() || !changes.containsKey(productDto.getId()))
+					.concatWith(Flux.defer(() -> Flux.fromStream(changes.values().stream()
+							.filter(productDto -> productDto != REMOVED && productDto.getPrice() >= min
+									&& productDto.getPrice() <= max))));
+		});
+	}
+
+	/**
+	 * This method applies a product event to the changes, and merges them into
+	 * the sorted arrays when there are "products.price-index.merge-threshold" of
+	 * them. A "reloaded" event empties the index and loads it again.
+	 *
+	 * @param event The change of the product.
+	 */
+	synchronized void apply(ProductEvent event) {
+		if (ProductEvent.RELOADED.equals(event.getType())) {
+			// The changes made from now on are newer than the products loaded.
+			ready = false;
+			snapshot = new Snapshot(new double[0], new ProductDto[0], Map.of());
+			load();
+			return;
+		}
+		Snapshot current = snapshot;
+		Map<String, ProductDto> changes = new HashMap<>(current.changes);
+		changes.put(event.getId(), event.getProduct() == null ? REMOVED : event.getProduct());
+		Snapshot changed = new Snapshot(current.prices, current.products, changes);
+		snapshot = ready && changes.size() >= mergeThreshold ? merge(changed) : changed;
+	}
+
+	/**
+	 * This method merges the changes into new sorted arrays, in one pass over
+	 * the arrays since only the changes need to be sorted.
+	 */
+	private static Snapshot merge(Snapshot current) {
+		List<ProductDto> changed = new ArrayList<>();
+		for (ProductDto productDto : current.changes.values()) {
+			if (productDto != REMOVED) {
+				changed.add(productDto);
+			}
+		}
+		changed.sort(Comparator.comparingDouble(ProductDto::getPrice));
+
+		int size = current.products.length + changed.size();
+		double[] prices = new double[size];
+		ProductDto[] products = new ProductDto[size];
+		int count = 0;
+		int c = 0;
+		for (int i = 0; i < current.products.length; i++) {
+			ProductDto productDto = current.products[i];
+			if (current.changes.containsKey(productDto.getId())) {
+				continue;
+			}
+			while (c < changed.size() && changed.get(c).getPrice() < current.prices[i]) {
+				prices[count] = changed.get(c).getPrice();
+				products[count++] = changed.get(c++);
+			}
+			prices[count] = current.prices[i];
+			products[count++] = productDto;
+		}
+		while (c < changed.size()) {
+			prices[count] = changed.get(c).getPrice();
+			products[count++] = changed.get(c++);
+		}
+
+		return new Snapshot(Arrays.copyOf(prices, count), Arrays.copyOf(products, count), Map.of());
+	}
+
+	/**
+	 * This method finds the index of the first price greater than or equal to
+	 * the given one, or the length if there is none.
+	 */
+	private static int firstAtLeast(double[] prices, double price) {
+		int low = 0;
+		int high = prices.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (prices[middle] < price) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * This method finds the index of the first price greater than the given
+	 * one, or the length if there is none.
+	 */
+	private static int firstAbove(double[] prices, double price) {
+		int low = 0;
+		int high = prices.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (prices[middle] <= price) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * The sorted arrays and the changes made since they were built, neither of
+	 * which is modified once the snapshot is read.
+	 */
+	private static final class Snapshot {
+		private final double[] prices;
+		private final ProductDto[] products;
+		private final Map<String, ProductDto> changes;
+
+		private Snapshot(double[] prices, ProductDto[] products, Map<String, ProductDto> changes) {
+			this.prices = prices;
+			this.products = products;
+			this.changes = changes;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package com.springbootcrudexample1.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.springbootcrudexample1.model.ProductDto;
+
+/**
+ * <h2>This class configures the shared JSON reader for products.</h2>
+ * The ObjectReader is immutable and thread-safe, so one pre-built reader is
+ * shared by the whole application instead of building a new ObjectMapper, and
+ * its deserializer caches, on every request. The products are written by the
+ * WebFlux codecs.
+ *
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Configuration
+public class JacksonConfig {
+	/**
+	 * This method creates the shared reader for the product data transfer object.
+	 *
+	 * @param objectMapper The application ObjectMapper, also used by the WebFlux codecs.
+	 * @return The ObjectReader bound to ProductDto.
+	 */
+	@Bean
+	public ObjectReader productDtoReader(ObjectMapper objectMapper) {
+		return objectMapper.readerFor(ProductDto.class);
+	}
+}
@@ -0,0 +1,34 @@
+package com.springbootcrudexample1.config;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import com.springbootcrudexample1.utils.ProductDtoReadConverter;
+import com.springbootcrudexample1.utils.ProductDtoWriteConverter;
+
+/**
+ * <h2>This class configures the MongoDB mapping.</h2>
+ * The custom conversions read and write ProductDto directly from and to the
+ * product documents, so the read endpoints skip the intermediate Product.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Configuration
+public class MongoConfig {
+	/**
+	 * This method registers the ProductDto converters, replacing the empty
+	 * conversions of the auto-configuration.
+	 * 
+	 * @return The custom conversions.
+	 */
+	@Bean
+	public MongoCustomConversions mongoCustomConversions() {
+		return new MongoCustomConversions(List.of(new ProductDtoReadConverter(), new ProductDtoWriteConverter()));
+	}
+}
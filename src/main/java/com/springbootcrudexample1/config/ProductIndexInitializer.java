@@ -0,0 +1,71 @@
+package com.springbootcrudexample1.config;
+
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.stereotype.Component;
+
+import com.springbootcrudexample1.model.Product;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+/**
+ * <h2>This class ensures the indexes of the product collection.</h2>
+ * The indexes declared on the Product class are resolved once the application
+ * is ready, and handled according to "products.indexes.mode": "create" creates
+ * the missing ones, "verify-only" reports the missing ones without creating
+ * them, and "off" does nothing.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Slf4j
+@Component
+public class ProductIndexInitializer {
+	@Autowired
+	private ReactiveMongoTemplate template;
+
+	@Value("${products.indexes.mode:create}")
+	private String mode;
+
+	/**
+	 * This method creates or verifies the product indexes, according to the mode.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void ensureIndexes() {
+		if ("off".equals(mode)) {
+			return;
+		}
+		if (!"create".equals(mode) && !"verify-only".equals(mode)) {
+			throw new IllegalStateException("Unknown products.indexes.mode: " + mode);
+		}
+
+		ReactiveIndexOperations indexOps = template.indexOps(Product.class);
+		IndexResolver resolver = IndexResolver.create(template.getConverter().getMappingContext());
+		Flux<IndexDefinition> indexes = Flux.fromIterable(resolver.resolveIndexFor(Product.class));
+
+		// The indexes are handled in the background, a failure is reported but does not stop the application.
+		if ("create".equals(mode)) {
+			indexes.concatMap(indexOps::ensureIndex).subscribe(
+					name -> log.info("Ensured index {} on the product collection", name),
+					ex -> log.error("Could not ensure the product indexes", ex));
+		} else {
+			indexOps.getIndexInfo().map(IndexInfo::getName).collect(Collectors.toSet())
+					.flatMapMany(existing -> indexes.map(index -> index.getIndexOptions().get("name"))
+							.filter(name -> !existing.contains(name)))
+					.subscribe(name -> log.warn("Index {} is missing on the product collection", name),
+							ex -> log.error("Could not verify the product indexes", ex));
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package com.springbootcrudexample1.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+import com.springbootcrudexample1.utils.ProductDtoJsonEncoder;
+
+/**
+ * <h2>This class configures the HTTP codecs of WebFlux.</h2>
+ * The custom codecs are added to the ones configured by Spring Boot. The
+ * ProductDto JSON encoder only encodes ProductDto, so it is tried before the
+ * Jackson encoder, which encodes any object. The Smile codecs are registered
+ * by WebFlux as soon as jackson-dataformat-smile is present, after the JSON
+ * ones, so JSON stays the format of the requests which do not ask for one.
+ *
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Configuration
+public class WebFluxCodecConfig implements WebFluxConfigurer {
+	/**
+	 * This method registers the ProductDto JSON encoder.
+	 *
+	 * @param configurer The codecs of the server.
+	 */
+	@Override
+	public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+		configurer.customCodecs().register(new ProductDtoJsonEncoder());
+	}
+}
@@ -0,0 +1,34 @@
+package com.springbootcrudexample1.config;
+
+import java.util.Map;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+
+import com.springbootcrudexample1.controller.ProductWebSocketHandler;
+
+/**
+ * <h2>This class configures the WebSocket end-points.</h2>
+ * The WebSocket handlers are mapped before the annotated controllers. The
+ * reactive WebSocket support comes with WebFlux.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Configuration
+public class WebSocketConfig {
+	/**
+	 * This method maps "/ws/products" to the product WebSocket handler.
+	 * 
+	 * @param productWebSocketHandler The product WebSocket handler.
+	 * @return The WebSocket handler mapping.
+	 */
+	@Bean
+	public HandlerMapping webSocketHandlerMapping(ProductWebSocketHandler productWebSocketHandler) {
+		return new SimpleUrlHandlerMapping(Map.of("/ws/products", productWebSocketHandler), -1);
+	}
+}
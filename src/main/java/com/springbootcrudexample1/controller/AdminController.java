@@ -0,0 +1,68 @@
+package com.springbootcrudexample1.controller;
+
+import java.util.Map;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.springbootcrudexample1.service.ProductService;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+
+/**
+ * <h2>This class provides the HTTP end-points for the administration.</h2>
+ * This controller class provides HTTP end-points reporting on the state of
+ * the database, such as the usage of the product indexes, and of the product
+ * cache and off-heap store.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+	/**
+	 * 
+	 * Dependency injection for ProductService object.
+	 */
+	@Autowired
+	private ProductService productService;
+
+	/**
+	 * This end-point, retrieves the usage statistics of the product indexes.
+	 * 
+	 * @return One document per index, with its name, key and accesses.
+	 */
+	@GetMapping("/indexes")
+	public Flux<Document> getIndexStats() {
+		return productService.getIndexStats();
+	}
+
+	/**
+	 * This end-point, retrieves the statistics of the product cache.
+	 * 
+	 * @return The hits, misses, evictions and size of the product cache.
+	 */
+	@GetMapping("/cache")
+	public Map<String, Object> getCacheStats() {
+		return productService.getCacheStats();
+	}
+
+	/**
+	 * This end-point, retrieves the memory statistics of the off-heap product
+	 * store, against the heap the same products would take.
+	 * 
+	 * @return The products, bytes and bytes per product of the off-heap store.
+	 */
+	@GetMapping("/off-heap-store")
+	public Map<String, Object> getOffHeapStoreStats() {
+		return productService.getOffHeapStoreStats();
+	}
+}
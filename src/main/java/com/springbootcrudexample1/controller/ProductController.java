@@ -1,8 +1,19 @@
 package com.springbootcrudexample1.controller;
 
+import java.net.URI;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -10,8 +21,20 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebInputException;
+
+import com.springbootcrudexample1.event.ProductCatalogVersion;
+import com.springbootcrudexample1.model.BulkItemResult;
+import com.springbootcrudexample1.model.PriceBucket;
+import com.springbootcrudexample1.model.PriceStats;
 import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.model.ProductLookupResult;
+import com.springbootcrudexample1.model.ProductPage;
+import com.springbootcrudexample1.model.RepriceJob;
+import com.springbootcrudexample1.model.RepriceRequest;
+import com.springbootcrudexample1.service.ProductConflictException;
 import com.springbootcrudexample1.service.ProductService;
 
 import lombok.RequiredArgsConstructor;
@@ -33,6 +56,13 @@ import reactor.core.publisher.Mono;
 @RestController
 @RequestMapping("/products")
 public class ProductController {
+	// The media type of a JSON Merge Patch, RFC 7396.
+	private static final String MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+	// The media type of Smile, the binary JSON of Jackson.
+	private static final String SMILE_VALUE = "application/x-jackson-smile";
+	// The headers which select the format and encoding of a tagged response.
+	private static final List<String> VARY = List.of(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+
 	/**
 	 * 
 	 * Dependency injection for ProductService object.
@@ -41,80 +71,328 @@ public class ProductController {
 	private ProductService productService;
 
 	/**
-	 * This end-point, retrieves all of the products in the database.
+	 * This end-point, retrieves all of the products in the database. With
+	 * "Accept: application/x-ndjson" or "text/event-stream" the products are
+	 * streamed as they are read, following the client backpressure. With
+	 * "Accept: application/x-jackson-smile" they are sent as binary Smile.
+	 * The response is tagged with the catalog version, and is a 304, without
+	 * reading any product, while the catalog has not changed.
 	 * 
+	 * @param exchange The exchange, for the conditional request headers.
 	 * @return All the products.
 	 */
-	@GetMapping
-	public Flux<ProductDto> getAllProducts() {
+	@GetMapping(produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+			MediaType.TEXT_EVENT_STREAM_VALUE, SMILE_VALUE })
+	public Flux<ProductDto> getAllProducts(ServerWebExchange exchange) {
+		if (notModified(exchange)) {
+			return Flux.empty();
+		}
 		return productService.getAllProducts();
 	}
 
+	/**
+	 * This end-point, retrieves a page of the products in the database, sorted
+	 * by id.
+	 * 
+	 * @param limit The maximum number of products in the page.
+	 * @param after The "next" cursor of the previous page, absent for the first page.
+	 * @return The page of products, with the cursor of the next page.
+	 */
+	@GetMapping(params = "limit")
+	public Mono<ProductPage> getProductsPage(@RequestParam("limit") int limit,
+			@RequestParam(value = "after", required = false) String after) {
+		if (limit < 1) {
+			return Mono.error(new ServerWebInputException("limit must be at least 1"));
+		}
+		return productService.getProductsPage(after, limit).onErrorMap(IllegalArgumentException.class,
+				ex -> new ServerWebInputException(ex.getMessage()));
+	}
+
+	/**
+	 * This end-point, retrieves the products with the given ids, e.g.
+	 * "ids=a,b,c", as for getProductsByIds.
+	 * 
+	 * @param ids The product ids.
+	 * @return The result of each id, in the order of the ids.
+	 */
+	@GetMapping(params = { "ids", "!limit" }, produces = { MediaType.APPLICATION_JSON_VALUE,
+			MediaType.APPLICATION_NDJSON_VALUE })
+	public Flux<ProductLookupResult> getProductsByIds(@RequestParam("ids") List<String> ids) {
+		return productService.getProductsByIds(ids).onErrorMap(IllegalArgumentException.class,
+				ex -> new ServerWebInputException(ex.getMessage()));
+	}
+
+	/**
+	 * This end-point, retrieves the products with the given ids in one
+	 * round-trip. The body is a JSON array of ids; the result of each id, found
+	 * or missing, follows the order of the ids.
+	 * 
+	 * @param idsMono The product ids, decoded from the request body.
+	 * @return The result of each id, in the order of the ids.
+	 */
+	@PostMapping(value = "/batch-get", produces = { MediaType.APPLICATION_JSON_VALUE,
+			MediaType.APPLICATION_NDJSON_VALUE })
+	public Flux<ProductLookupResult> getProductsByIds(@RequestBody Mono<List<String>> idsMono) {
+		return idsMono.flatMapMany(productService::getProductsByIds).onErrorMap(IllegalArgumentException.class,
+				ex -> new ServerWebInputException(ex.getMessage()));
+	}
+
+	/**
+	 * This end-point, searches a page of products, either by the prefix of
+	 * their product numbers, sorted by product number, or by the words of
+	 * their names, the most relevant first.
+	 * 
+	 * @param productNum The prefix of the product numbers, case-sensitive.
+	 * @param name       The words to search in the names, any of them matches.
+	 * @param limit      The maximum number of products in the page, 20 by default.
+	 * @param after      The "next" cursor of the previous page, absent for the first page.
+	 * @return The page of products, with the cursor of the next page.
+	 */
+	@GetMapping("/search")
+	public Mono<ProductPage> searchProducts(@RequestParam(value = "productNum", required = false) String productNum,
+			@RequestParam(value = "name", required = false) String name,
+			@RequestParam(value = "limit", defaultValue = "20") int limit,
+			@RequestParam(value = "after", required = false) String after) {
+		if ((productNum == null) == (name == null)) {
+			return Mono.error(new ServerWebInputException("Exactly one of productNum or name is required"));
+		}
+		if (limit < 1) {
+			return Mono.error(new ServerWebInputException("limit must be at least 1"));
+		}
+		Mono<ProductPage> page = productNum != null ? productService.searchByProductNumPrefix(productNum, after, limit)
+				: productService.searchByName(name, after, limit);
+		return page.onErrorMap(IllegalArgumentException.class, ex -> new ServerWebInputException(ex.getMessage()));
+	}
+
+	/**
+	 * This end-point, retrieves the count, minimum, maximum and average of the
+	 * product prices, computed by MongoDB.
+	 * 
+	 * @return The statistics of the product prices.
+	 */
+	@GetMapping("/stats")
+	public Mono<PriceStats> getPriceStats() {
+		return productService.getPriceStats();
+	}
+
+	/**
+	 * This end-point, retrieves a histogram of the product prices, computed by
+	 * MongoDB, with buckets of about the same number of products.
+	 * 
+	 * @param buckets The number of buckets, 10 by default.
+	 * @return The buckets, by increasing prices.
+	 */
+	@GetMapping("/price-histogram")
+	public Flux<PriceBucket> getPriceHistogram(@RequestParam(value = "buckets", defaultValue = "10") int buckets) {
+		return productService.getPriceHistogram(buckets).onErrorMap(IllegalArgumentException.class,
+				ex -> new ServerWebInputException(ex.getMessage()));
+	}
+
 	/**
 	 * This end-point, retrieves a product from the database with a specified
-	 * id.
+	 * id, as JSON, or as Smile according to the Accept header. A
+	 * versioned product is tagged with a weak ETag of its id and version, the
+	 * same for every format and encoding, and is a 304 when the client
+	 * already has that version.
 	 * 
-	 * @param id The product id.
+	 * @param id       The product id.
+	 * @param exchange The exchange, for the conditional request headers.
 	 * @return The product with the specified id.
 	 */
 	@GetMapping("/{id}")
-	public Mono<ProductDto> getProductById(@PathVariable String id) {
-		return productService.getProductById(id);
+	public Mono<ProductDto> getProductById(@PathVariable String id, ServerWebExchange exchange) {
+		exchange.getResponse().getHeaders().setVary(VARY);
+		return productService.getProductById(id).filter(productDto -> productDto.getVersion() == null
+				|| !exchange.checkNotModified("W/\"" + productDto.getId() + "-" + productDto.getVersion() + "\""));
 	}
 
 	/**
 	 * This end-point, retrieves products whose prices are within the given
-	 * range.
+	 * range. The products can be streamed, and are a 304 while the catalog
+	 * has not changed, as for getAllProducts.
 	 * 
-	 * @param min The minimum value of the range.
-	 * @param max The maximum value or the range.
+	 * @param min      The minimum value of the range.
+	 * @param max      The maximum value or the range.
+	 * @param exchange The exchange, for the conditional request headers.
 	 * @return The products whose prices are within the range.
 	 */
-	@GetMapping("/product_range")
-	public Flux<ProductDto> getProductInRange(@RequestParam("min") double min, @RequestParam("max") double max) {
+	@GetMapping(value = "/product_range", produces = { MediaType.APPLICATION_JSON_VALUE,
+			MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE, SMILE_VALUE })
+	public Flux<ProductDto> getProductInRange(@RequestParam("min") double min, @RequestParam("max") double max,
+			ServerWebExchange exchange) {
+		if (notModified(exchange)) {
+			return Flux.empty();
+		}
 		return productService.getProductInRange(min, max);
 	}
 
 	/**
-	 * This end-point, saves a given product to the database.
+	 * This end-point, retrieves only the given fields of the products whose
+	 * prices are within the given range, e.g. "fields=id,price".
+	 * 
+	 * @param min    The minimum value of the range.
+	 * @param max    The maximum value or the range.
+	 * @param fields The fields to retrieve: id, productNum, name, price or version.
+	 * @return The fields of the products whose prices are within the range.
+	 */
+	@GetMapping(value = "/product_range", params = { "fields", "!limit" }, produces = {
+			MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE,
+			SMILE_VALUE })
+	public Flux<Map<String, Object>> getProductFieldsInRange(@RequestParam("min") double min,
+			@RequestParam("max") double max, @RequestParam("fields") List<String> fields) {
+		return productService.getProductInRange(min, max, fields).onErrorMap(IllegalArgumentException.class,
+				ex -> new ServerWebInputException(ex.getMessage()));
+	}
+
+	/**
+	 * This end-point, retrieves a page of the products whose prices are within
+	 * the given range, sorted by price and id.
+	 * 
+	 * @param min   The minimum value of the range.
+	 * @param max   The maximum value or the range.
+	 * @param limit The maximum number of products in the page.
+	 * @param after The "next" cursor of the previous page, absent for the first page.
+	 * @return The page of products, with the cursor of the next page.
+	 */
+	@GetMapping(value = "/product_range", params = "limit")
+	public Mono<ProductPage> getProductInRangePage(@RequestParam("min") double min, @RequestParam("max") double max,
+			@RequestParam("limit") int limit, @RequestParam(value = "after", required = false) String after) {
+		if (limit < 1) {
+			return Mono.error(new ServerWebInputException("limit must be at least 1"));
+		}
+		return productService.getProductInRangePage(min, max, after, limit).onErrorMap(
+				IllegalArgumentException.class, ex -> new ServerWebInputException(ex.getMessage()));
+	}
+
+	/**
+	 * This end-point, saves a given product to the database. The body is JSON
+	 * or Smile, according to its Content-Type.
 	 * 
-	 * @param productJsonString A JSON string representation of the product.
+	 * @param productDtoMono The product, decoded from the request body.
 	 * @return The product which has been saved in the database.
 	 */
 	@PostMapping
-	public Mono<ProductDto> saveProduct(@RequestBody String productJsonString) {
-		if (productJsonString.length() == 0) {
-			return null;
-		}
-		return productService.saveProduct(productJsonString);
+	public Mono<ProductDto> saveProduct(@RequestBody Mono<ProductDto> productDtoMono) {
+		return productService.saveProduct(productDtoMono);
+	}
+
+	/**
+	 * This end-point, saves many products to the database in batches. The body
+	 * is a JSON or Smile array, or an NDJSON stream of products, decoded as it
+	 * arrives.
+	 * Products with an id replace the existing product, or are inserted.
+	 * 
+	 * @param productDtoFlux The products, decoded from the request body.
+	 * @param ordered        True to stop at the first failed write, false to attempt all of them.
+	 * @return The result of each product, in the order of the request.
+	 */
+	@PostMapping(value = "/bulk", consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+			SMILE_VALUE })
+	public Flux<BulkItemResult> saveProducts(@RequestBody Flux<ProductDto> productDtoFlux,
+			@RequestParam(value = "ordered", defaultValue = "true") boolean ordered) {
+		return productService.saveProducts(productDtoFlux, ordered);
 	}
 
 	/**
 	 * This end-point, updates/overwrites the existing product in the database, 
-	 * with the given product.
+	 * with the given product. With a version, the product is only updated if
+	 * it is still at that version, otherwise the status is 409.
 	 * 
-	 * @param productJsonString The product in the form of JSON string.
-	 * @return The updated/overwritten product.
+	 * @param productDtoMono The product, decoded from the request body.
+	 * @return The updated/overwritten product, with its new version.
 	 */
 	@PostMapping("/update")
-	public Mono<ProductDto> updateProduct(@RequestBody String productJsonString) {
-		if (productJsonString.length() == 0) {
-			return null;
-		}
-		return productService.updateProduct(productJsonString);
+	public Mono<ProductDto> updateProduct(@RequestBody Mono<ProductDto> productDtoMono) {
+		return productService.updateProduct(productDtoMono).onErrorMap(ProductConflictException.class,
+				ex -> new ResponseStatusException(HttpStatus.CONFLICT, ex.getMessage()));
+	}
+
+	/**
+	 * This end-point, updates only the given fields of a product, with a JSON
+	 * Merge Patch: the fields with a value are set, the fields with null are
+	 * removed. With a version, the product is only patched if it is still at
+	 * that version, otherwise the status is 409.
+	 * 
+	 * @param id         The product id.
+	 * @param mergePatch The merge patch, decoded from the request body.
+	 * @return The patched product, or status 404 if no product has the id.
+	 */
+	@PatchMapping(value = "/{id}", consumes = { MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+	public Mono<ProductDto> patchProduct(@PathVariable String id, @RequestBody Mono<Map<String, Object>> mergePatch) {
+		return productService.patchProduct(id, mergePatch)
+				.switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)))
+				.onErrorMap(IllegalArgumentException.class, ex -> new ServerWebInputException(ex.getMessage()))
+				.onErrorMap(ProductConflictException.class,
+						ex -> new ResponseStatusException(HttpStatus.CONFLICT, ex.getMessage()));
+	}
+
+	/**
+	 * This end-point, patches many products in batches. The body is a JSON
+	 * array or an NDJSON stream of merge patches, each with the "id" of its
+	 * product, e.g. {"id": "...", "price": 9.99}.
+	 * 
+	 * @param mergePatches The merge patches, decoded from the request body.
+	 * @param ordered      True to stop at the first failed patch, false to attempt all of them.
+	 * @return The result of each patch, in the order of the request.
+	 */
+	@PatchMapping(value = "/bulk", consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE })
+	public Flux<BulkItemResult> patchProducts(@RequestBody Flux<Map<String, Object>> mergePatches,
+			@RequestParam(value = "ordered", defaultValue = "true") boolean ordered) {
+		return productService.patchProducts(mergePatches, ordered).onErrorMap(IllegalArgumentException.class,
+				ex -> new ServerWebInputException(ex.getMessage()));
+	}
+
+	/**
+	 * This end-point, starts repricing the products within a price range, e.g.
+	 * {"min": 10, "max": 100, "factor": 1.05, "scale": 2} for +5%, rounded to
+	 * the cent. The repricing runs in the background.
+	 * 
+	 * @param requestMono The repricing, decoded from the request body.
+	 * @return The started job, with status 202 and its location.
+	 */
+	@PostMapping("/reprice")
+	public Mono<ResponseEntity<RepriceJob>> startReprice(@RequestBody Mono<RepriceRequest> requestMono) {
+		return requestMono.flatMap(productService::startReprice)
+				.map(job -> ResponseEntity.accepted().location(URI.create("/products/reprice/" + job.getId())).body(job))
+				.onErrorMap(IllegalArgumentException.class, ex -> new ServerWebInputException(ex.getMessage()));
+	}
+
+	/**
+	 * This end-point, retrieves the progress of a repricing job.
+	 * 
+	 * @param jobId The job id.
+	 * @return The job, or status 404 if this instance has no such job.
+	 */
+	@GetMapping("/reprice/{jobId}")
+	public Mono<RepriceJob> getRepriceJob(@PathVariable String jobId) {
+		return productService.getRepriceJob(jobId)
+				.switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)));
 	}
 
 	/**
 	 * This end-point, removes the given product from the database.
 	 * 
-	 * @param productJsonString The product in the form of JSON string.
-	 * @return Nothing.
+	 * @param productDtoMono The product, decoded from the request body.
+	 * @return Nothing, with status 200 if removed or 404 if it did not exist.
 	 */
 	@PostMapping("/delete")
-	public Mono<Void> deleteProduct(@RequestBody String productJsonString) {
-		if (productJsonString.length() == 0) {
-			return null;
+	public Mono<ResponseEntity<Void>> deleteProduct(@RequestBody Mono<ProductDto> productDtoMono) {
+		return productService.deleteProduct(productDtoMono)
+				.map(deleted -> deleted ? ResponseEntity.ok().<Void>build() : ResponseEntity.notFound().<Void>build());
+	}
+
+	/**
+	 * This method tags a collection response with the catalog version, read
+	 * before the products, and tells whether the client already has it. The
+	 * Last-Modified header, to the second, is only sent once the second of the
+	 * last change is over, as a change later in that second would not move it.
+	 */
+	private boolean notModified(ServerWebExchange exchange) {
+		ProductCatalogVersion.Version version = productService.getCatalogVersion();
+		exchange.getResponse().getHeaders().setVary(VARY);
+		if (version.getLastModified().truncatedTo(ChronoUnit.SECONDS).plusSeconds(1).isAfter(Instant.now())) {
+			return exchange.checkNotModified(version.getETag());
 		}
-		return productService.deleteProduct(productJsonString);
+		return exchange.checkNotModified(version.getETag(), version.getLastModified());
 	}
 }
@@ -0,0 +1,137 @@
+package com.springbootcrudexample1.controller;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springbootcrudexample1.event.ProductEventPublisher;
+import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.model.ProductEvent;
+
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * <h2>This class provides the WebSocket end-point for the product changes.</h2>
+ * The "/ws/products" end-point pushes every product creation, update and
+ * deletion as a JSON ProductEvent. The optional "min" and "max" query
+ * parameters only push the products whose prices are within the range, as
+ * getProductInRange; deletions are always pushed, as are the "reloaded"
+ * events of many products changed at once. A product updated to a price
+ * outside of the range is pushed once as an "out-of-range" event, so the
+ * client can drop it, unless the connection has already seen it out of the
+ * range.
+ * 
+ * Each connection buffers up to "products.websocket.buffer-size" events. With
+ * "policy=drop", the default, the oldest events are dropped when the buffer is
+ * full; with "policy=latest" only the latest event of each product is kept.
+ * Either way a slow client never holds up the other connections.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Component
+public class ProductWebSocketHandler implements WebSocketHandler {
+	@Autowired
+	private ProductEventPublisher events;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Value("${products.websocket.buffer-size:256}")
+	private int bufferSize;
+
+	/**
+	 * This method pushes the product events to a connection, until it is closed.
+	 * 
+	 * @param session The WebSocket connection.
+	 * @return The completion of the connection.
+	 */
+	@Override
+	public Mono<Void> handle(WebSocketSession session) {
+		MultiValueMap<String, String> params = UriComponentsBuilder.fromUri(session.getHandshakeInfo().getUri())
+				.build().getQueryParams();
+		Flux<ProductEvent> productEvents;
+		try {
+			productEvents = events(parsePrice(params.getFirst("min"), Double.NEGATIVE_INFINITY),
+					parsePrice(params.getFirst("max"), Double.POSITIVE_INFINITY), params.getFirst("policy"));
+		} catch (IllegalArgumentException ex) {
+			return session.close(CloseStatus.BAD_DATA.withReason(ex.getMessage()));
+		}
+
+		// The incoming messages are ignored, receiving them detects the closing of the connection.
+		return session.send(productEvents.map(event -> session.textMessage(toJson(event))))
+				.and(session.receive().then());
+	}
+
+	/**
+	 * This method gets the product events of a connection, filtered on the
+	 * price range and with the overflow policy applied.
+	 * 
+	 * @param min    The minimum price.
+	 * @param max    The maximum price.
+	 * @param policy "drop" or "latest", null for "drop".
+	 * @return The product events of the connection.
+	 */
+	Flux<ProductEvent> events(double min, double max, String policy) {
+		if (policy != null && !"drop".equals(policy) && !"latest".equals(policy)) {
+			throw new IllegalArgumentException("Unknown policy: " + policy);
+		}
+		Flux<ProductEvent> productEvents = Flux.defer(() -> {
+			// The ids of the products this connection knows to be out of the range.
+			Set<String> outOfRange = new HashSet<>();
+			return events.events().handle((event, sink) -> {
+				ProductDto product = event.getProduct();
+				if (product == null) {
+					if (event.getId() == null) {
+						outOfRange.clear();
+					} else {
+						outOfRange.remove(event.getId());
+					}
+					sink.next(event);
+				} else if (product.getPrice() >= min && product.getPrice() <= max) {
+					outOfRange.remove(event.getId());
+					sink.next(event);
+				} else if (outOfRange.add(event.getId()) && ProductEvent.UPDATED.equals(event.getType())) {
+					sink.next(new ProductEvent(ProductEvent.OUT_OF_RANGE, event.getId(), product));
+				}
+			});
+		});
+
+		if ("latest".equals(policy)) {
+			// The "reloaded" events, without id, are grouped together.
+			return productEvents.groupBy(event -> event.getId() == null ? "" : event.getId())
+					.flatMap(Flux::onBackpressureLatest, Integer.MAX_VALUE, 1);
+		}
+		return productEvents.onBackpressureBuffer(bufferSize, dropped -> {
+		}, BufferOverflowStrategy.DROP_OLDEST);
+	}
+
+	private static double parsePrice(String price, double defaultPrice) {
+		return price == null ? defaultPrice : Double.parseDouble(price);
+	}
+
+	private String toJson(ProductEvent event) {
+		try {
+			return objectMapper.writeValueAsString(event);
+		} catch (JsonProcessingException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package com.springbootcrudexample1.event;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import reactor.core.Disposable;
+
+/**
+ * <h2>This class counts the changes of the product catalog.</h2>
+ * Every product event increments the version of the catalog and sets its last
+ * modification time, so a collection response can be tagged before it is read,
+ * and a client polling an unchanged collection gets a 304. The writes of many
+ * products at once, bulk patches and reprices, publish events too. The ETag
+ * also holds the start time of this instance, so a restart never reuses a
+ * version. It is weak, as the same version is sent in every format and
+ * encoding.
+ *
+ * The version follows the events seen by this instance: with several instances,
+ * the product change stream has to be enabled, as for the product cache.
+ *
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Component
+public class ProductCatalogVersion {
+	@Autowired
+	private ProductEventPublisher events;
+
+	private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+	private final AtomicReference<Version> current = new AtomicReference<>(new Version(epoch, 0, Instant.now()));
+	private Disposable subscription;
+
+	/**
+	 * This method starts counting the product events.
+	 */
+	@PostConstruct
+	public void start() {
+		subscription = events.events().subscribe(event -> changed());
+	}
+
+	/**
+	 * This method stops counting the product events.
+	 */
+	@PreDestroy
+	public void stop() {
+		if (subscription != null) {
+			subscription.dispose();
+		}
+	}
+
+	/**
+	 * This method gets the current version of the catalog.
+	 *
+	 * @return The version, with its ETag and last modification time.
+	 */
+	public Version get() {
+		return current.get();
+	}
+
+	/**
+	 * This method records a change of the catalog.
+	 */
+	void changed() {
+		current.updateAndGet(version -> new Version(epoch, version.counter + 1, Instant.now()));
+	}
+
+	/**
+	 * <h2>This class represents a version of the product catalog.</h2>
+	 * The ETag and the last modification time are read together, from the same
+	 * change.
+	 */
+	public static final class Version {
+		private final String eTag;
+		private final long counter;
+		private final Instant lastModified;
+
+		private Version(String epoch, long counter, Instant lastModified) {
+			this.eTag = "W/\"" + epoch + "-" + counter + "\"";
+			this.counter = counter;
+			this.lastModified = lastModified;
+		}
+
+		/**
+		 * This method gets the weak ETag of the catalog version.
+		 *
+		 * @return The quoted weak ETag.
+		 */
+		public String getETag() {
+			return eTag;
+		}
+
+		/**
+		 * This method gets the time of the last change of the catalog.
+		 *
+		 * @return The last modification time, the start time if nothing changed.
+		 */
+		public Instant getLastModified() {
+			return lastModified;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package com.springbootcrudexample1.event;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.springbootcrudexample1.model.ProductEvent;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * <h2>This class publishes the changes of the products.</h2>
+ * The events are multicast to every current subscriber. A subscriber which
+ * cannot keep up misses events, it never slows down the publisher or the
+ * other subscribers, so a subscriber should buffer or conflate on its own.
+ * 
+ * When the product change stream is enabled, the events come from it and
+ * cover the writes of every instance; otherwise they come from the writes of
+ * this instance.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Component
+public class ProductEventPublisher {
+	private final Sinks.Many<ProductEvent> sink = Sinks.many().multicast().directBestEffort();
+
+	@Value("${products.cache.change-stream.enabled:false}")
+	private boolean changeStreamEnabled;
+
+	/**
+	 * This method publishes a change made by this instance. It is ignored when
+	 * the change stream publishes all of the changes.
+	 * 
+	 * @param event The change of the product.
+	 */
+	public void publishLocal(ProductEvent event) {
+		if (!changeStreamEnabled) {
+			emit(event);
+		}
+	}
+
+	/**
+	 * This method tells whether the changes made by this instance are
+	 * published, so a write which does not read its products back only needs
+	 * to when they are.
+	 * 
+	 * @return True unless the change stream publishes all of the changes.
+	 */
+	public boolean publishesLocalChanges() {
+		return !changeStreamEnabled;
+	}
+
+	/**
+	 * This method publishes a change read from the change stream.
+	 * 
+	 * @param event The change of the product.
+	 */
+	public void publishFromChangeStream(ProductEvent event) {
+		emit(event);
+	}
+
+	/**
+	 * This method gets the events published from now on.
+	 * 
+	 * @return The product events.
+	 */
+	public Flux<ProductEvent> events() {
+		return sink.asFlux();
+	}
+
+	private synchronized void emit(ProductEvent event) {
+		// Without subscribers, or with a full subscriber, the event is simply dropped.
+		sink.tryEmitNext(event);
+	}
+}
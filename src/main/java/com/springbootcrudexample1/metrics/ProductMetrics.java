@@ -0,0 +1,88 @@
+package com.springbootcrudexample1.metrics;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * <h2>This class records the metrics of the product services.</h2>
+ * The "products.repository" timer measures each repository call, from the
+ * subscription to the end of its results, tagged with the repository method
+ * and its outcome, with a percentile histogram. The
+ * "products.json.parse.failures" counter counts the product bodies which could
+ * not be parsed, tagged with the operation.
+ * 
+ * The end-points are measured by the "http.server.requests" timer of Spring
+ * Boot, and the Mongo driver by the "mongodb.driver" meters.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Component
+public class ProductMetrics {
+	private final MeterRegistry registry;
+
+	/**
+	 * This constructor binds the metrics to the registry.
+	 * 
+	 * @param registry The registry the meters are published to.
+	 */
+	public ProductMetrics(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * This method measures a repository call returning one result.
+	 * 
+	 * @param <T>    The result type.
+	 * @param method The repository method.
+	 * @param call   The repository call, not yet subscribed.
+	 * @return The measured call.
+	 */
+	public <T> Mono<T> timeRepository(String method, Mono<T> call) {
+		return Mono.defer(() -> {
+			Timer.Sample sample = Timer.start(registry);
+			return call.doFinally(signal -> sample.stop(repositoryTimer(method, signal)));
+		});
+	}
+
+	/**
+	 * This method measures a repository call returning many results.
+	 * 
+	 * @param <T>    The result type.
+	 * @param method The repository method.
+	 * @param call   The repository call, not yet subscribed.
+	 * @return The measured call.
+	 */
+	public <T> Flux<T> timeRepository(String method, Flux<T> call) {
+		return Flux.defer(() -> {
+			Timer.Sample sample = Timer.start(registry);
+			return call.doFinally(signal -> sample.stop(repositoryTimer(method, signal)));
+		});
+	}
+
+	/**
+	 * This method counts a product body which could not be parsed.
+	 * 
+	 * @param operation The operation of the body: save, update or delete.
+	 */
+	public void parseFailure(String operation) {
+		Counter.builder("products.json.parse.failures").description("Product bodies which could not be parsed")
+				.tag("operation", operation).register(registry).increment();
+	}
+
+	private Timer repositoryTimer(String method, SignalType signal) {
+		String outcome = signal == SignalType.ON_COMPLETE ? "success"
+				: signal == SignalType.ON_ERROR ? "error" : "cancelled";
+
+		return Timer.builder("products.repository").description("Product repository calls")
+				.tag("method", method).tag("outcome", outcome).publishPercentileHistogram().register(registry);
+	}
+}
@@ -0,0 +1,38 @@
+package com.springbootcrudexample1.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * <h2>This class represents the result of one product in a bulk write or patch.</h2>
+ * The BulkItemResult class holds the position of the product in the request,
+ * the product id, the status of its write and the error message, if any.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkItemResult {
+	/** The status of a product inserted as a new document. */
+	public static final String INSERTED = "inserted";
+	/** The status of a product which replaced an existing document. */
+	public static final String REPLACED = "replaced";
+	/** The status of a product whose write failed. */
+	public static final String FAILED = "failed";
+	/** The status of a product not written because an earlier ordered write failed. */
+	public static final String SKIPPED = "skipped";
+	/** The status of a product whose fields were patched. */
+	public static final String PATCHED = "patched";
+	/** The status of a patch without product to apply to. */
+	public static final String MISSING = "missing";
+
+	private long index;
+	private String id;
+	private String status;
+	private String error;
+}
@@ -0,0 +1,25 @@
+package com.springbootcrudexample1.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * <h2>This class represents a bucket of a price histogram.</h2>
+ * The PriceBucket class holds the bounds of the bucket, the minimum included
+ * and the maximum excluded, except for the last bucket, and the number of
+ * products whose prices are within them.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PriceBucket {
+	private double min;
+	private double max;
+	private long count;
+}
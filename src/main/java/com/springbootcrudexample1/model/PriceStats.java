@@ -0,0 +1,25 @@
+package com.springbootcrudexample1.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * <h2>This class represents the statistics of the product prices.</h2>
+ * The PriceStats class holds the number of products and the minimum, maximum
+ * and average of their prices, null when there is no product.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PriceStats {
+	private long count;
+	private Double min;
+	private Double max;
+	private Double avg;
+}
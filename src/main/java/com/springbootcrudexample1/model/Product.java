@@ -1,6 +1,10 @@
 package com.springbootcrudexample1.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -9,6 +13,12 @@ import lombok.NoArgsConstructor;
 /**
  * <h2>This class represents the product entity.</h2>
  * This Product class represents the product entity with id, product number, product name and price.
+ * The version is set to 0 by the insert and incremented by every update.
+ * 
+ * The indexes are created at startup by ProductIndexInitializer. The (price, _id)
+ * index serves the price range queries, its price prefix included, and their pages.
+ * The productNum index also serves the product number prefix search, and the
+ * text index on name the full-text name search.
  * 
  * @author seanea
  * @version 1.0
@@ -19,12 +29,29 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @NoArgsConstructor
 @Document(collection = "productss")
+@CompoundIndex(name = "price_id", def = "{'price': 1, '_id': 1}")
 public class Product {
 	@Id
 	private String id;
+	@Indexed(name = "productNum", unique = true, sparse = true)
 	private String productNum;
+	@TextIndexed
 	private String name;
 	private double price;
+	@Version
+	private Long version;
+
+	/**
+	 * This constructor creates a product without version, as before its insert.
+	 * 
+	 * @param id         The id.
+	 * @param productNum The product number.
+	 * @param name       The name.
+	 * @param price      The price.
+	 */
+	public Product(String id, String productNum, String name, double price) {
+		this(id, productNum, name, price, null);
+	}
 
 	/**
 	 * This method sets the id to the product.
@@ -98,10 +125,28 @@ public class Product {
 		return price;
 	}
 
+	/**
+	 * This method sets the version of the product.
+	 * 
+	 * @param version2 The product version, or null if unknown.
+	 */
+	public void setVersion(Long version2) {
+		version = version2;
+	}
+
+	/**
+	 * This method gets the version of the product, incremented by every update.
+	 * 
+	 * @return The product version, or null if unknown.
+	 */
+	public Long getVersion() {
+		return version;
+	}
+
 	/**
 	 * This method returns the class fields in JSON string format.
 	 */
 	public String toString() {
-		return "{" + "\"id\": " + id + ", \"productNum\": " + productNum + ", \"name\": " + name + ", \"price\": " + price + "}";
+		return "{" + "\"id\": " + id + ", \"productNum\": " + productNum + ", \"name\": " + name + ", \"price\": " + price + ", \"version\": " + version + "}";
 	}
 }
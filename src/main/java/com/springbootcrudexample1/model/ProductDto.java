@@ -9,6 +9,7 @@ import lombok.NoArgsConstructor;
 /**
  * <h2>This class represents the product data transfer object.</h2>
  * The ProductDto class represents the Product Data Transfer Object with id, product number, product name, and price.
+ * The version, when given, makes an update apply only to that version of the product.
  * 
  * @author seanea
  * @version 1.0
@@ -24,6 +25,19 @@ public class ProductDto implements Serializable {
 	private String productNum;
 	private String name;
 	private double price;
+	private Long version;
+
+	/**
+	 * This constructor creates a product data transfer object without version.
+	 * 
+	 * @param id         The id.
+	 * @param productNum The product number.
+	 * @param name       The name.
+	 * @param price      The price.
+	 */
+	public ProductDto(String id, String productNum, String name, double price) {
+		this(id, productNum, name, price, null);
+	}
 	
 	/**
 	 * This method sets the of the id to the product data transfer object.
@@ -97,10 +111,28 @@ public class ProductDto implements Serializable {
 		return price;
 	}
 
+	/**
+	 * This method sets the version of the product data transfer object.
+	 * 
+	 * @param version2 The product data transfer object version, or null if unknown.
+	 */
+	public void setVersion(Long version2) {
+		version = version2;
+	}
+
+	/**
+	 * This method gets the version of the product data transfer object, incremented by every update.
+	 * 
+	 * @return The product data transfer object version, or null if unknown.
+	 */
+	public Long getVersion() {
+		return version;
+	}
+
 	/**
 	 * This method returns the class fields in JSON string format.
 	 */
 	public String toString() {
-		return "{" + "\"id\": " + id + ", \"productNum\": " + productNum + ", \"name\": " + name + ", \"price\": " + price + "}";
+		return "{" + "\"id\": " + id + ", \"productNum\": " + productNum + ", \"name\": " + name + ", \"price\": " + price + ", \"version\": " + version + "}";
 	}
 }
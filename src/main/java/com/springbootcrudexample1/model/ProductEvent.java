@@ -0,0 +1,39 @@
+package com.springbootcrudexample1.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * <h2>This class represents a change of a product.</h2>
+ * The ProductEvent class holds the type of the change, the product id and the
+ * product after the change, which is null when the product has been deleted.
+ * A "reloaded" event, without id or product, tells that many products changed
+ * at once, so whatever holds products has to read them again. An
+ * "out-of-range" event tells a WebSocket connection that a product has been
+ * updated to a price outside of its price range.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductEvent {
+	/** The type of the event of a product created. */
+	public static final String CREATED = "created";
+	/** The type of the event of a product updated. */
+	public static final String UPDATED = "updated";
+	/** The type of the event of a product deleted. */
+	public static final String DELETED = "deleted";
+	/** The type of the event of many products changed at once, not published one by one. */
+	public static final String RELOADED = "reloaded";
+	/** The type of the event of a product updated to a price outside of the range of a connection. */
+	public static final String OUT_OF_RANGE = "out-of-range";
+
+	private String type;
+	private String id;
+	private ProductDto product;
+}
@@ -0,0 +1,29 @@
+package com.springbootcrudexample1.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * <h2>This class represents the result of one id in a multi-get.</h2>
+ * The ProductLookupResult class holds the requested id, whether the product
+ * was found, and the product, if found.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductLookupResult {
+	/** The status of an id whose product was found. */
+	public static final String FOUND = "found";
+	/** The status of an id without product. */
+	public static final String MISSING = "missing";
+
+	private String id;
+	private String status;
+	private ProductDto product;
+}
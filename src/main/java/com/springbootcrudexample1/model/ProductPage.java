@@ -0,0 +1,25 @@
+package com.springbootcrudexample1.model;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * <h2>This class represents a page of products.</h2>
+ * The ProductPage class holds the products of one page and the opaque cursor
+ * to pass as "after" to get the next page, null on the last page.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductPage {
+	private List<ProductDto> items;
+	private String next;
+}
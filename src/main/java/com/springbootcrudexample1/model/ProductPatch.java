@@ -0,0 +1,29 @@
+package com.springbootcrudexample1.model;
+
+import java.util.Map;
+import java.util.Set;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * <h2>This class represents a partial update of a product.</h2>
+ * The ProductPatch class holds the product id, the fields to set with their
+ * values, the fields to remove and, for a conditional update, the expected
+ * version. It is the JSON Merge Patch of a ProductDto, as written to MongoDB.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductPatch {
+	private String id;
+	private Map<String, Object> set;
+	private Set<String> unset;
+	private Long version;
+}
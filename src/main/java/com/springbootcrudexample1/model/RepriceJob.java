@@ -0,0 +1,54 @@
+package com.springbootcrudexample1.model;
+
+import java.time.Instant;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * <h2>This class represents the progress of a repricing job.</h2>
+ * The RepriceJob class holds the job id, its request, its status, the number
+ * of products in the range when it started, the chunks of the range done so
+ * far, and the products matched and modified by them. The job runs in the
+ * background and its fields are updated as the chunks complete.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Data
+@NoArgsConstructor
+public class RepriceJob {
+	/** The status of a job whose chunks are being repriced. */
+	public static final String RUNNING = "running";
+	/** The status of a job whose chunks have all been repriced. */
+	public static final String COMPLETED = "completed";
+	/** The status of a job stopped by an error, its completed chunks stay repriced. */
+	public static final String FAILED = "failed";
+
+	private String id;
+	private RepriceRequest request;
+	private volatile String status;
+	private volatile long total;
+	private volatile int chunks;
+	private volatile int chunksDone;
+	private volatile long matched;
+	private volatile long modified;
+	private Instant startedAt;
+	private volatile Instant finishedAt;
+	private volatile String error;
+
+	/**
+	 * This constructor creates a running job.
+	 * 
+	 * @param id      The job id.
+	 * @param request The repricing.
+	 */
+	public RepriceJob(String id, RepriceRequest request) {
+		this.id = id;
+		this.request = request;
+		this.status = RUNNING;
+		this.startedAt = Instant.now();
+	}
+}
@@ -0,0 +1,27 @@
+package com.springbootcrudexample1.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * <h2>This class represents a repricing of the products in a price range.</h2>
+ * The RepriceRequest class holds the price range, inclusive, and the change
+ * of the price: new price = round(price * factor + add, scale). For example
+ * "+5% for every product between 10 and 100" is min 10, max 100, factor 1.05.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RepriceRequest {
+	private double min;
+	private double max;
+	private double factor = 1.0;
+	private double add = 0.0;
+	private int scale = 2;
+}
@@ -19,7 +19,7 @@ import reactor.core.publisher.Flux;
  *
  */
 @Repository
-public interface IProductRepository extends ReactiveMongoRepository<Product, String> {
+public interface IProductRepository extends ReactiveMongoRepository<Product, String>, IProductRepositoryCustom {
 	/**
 	 * This method finds the price between a price range, a read action.
 	 * 
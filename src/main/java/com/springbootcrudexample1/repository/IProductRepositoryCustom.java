@@ -0,0 +1,228 @@
+package com.springbootcrudexample1.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.bson.Document;
+
+import com.mongodb.client.result.UpdateResult;
+import com.springbootcrudexample1.model.BulkItemResult;
+import com.springbootcrudexample1.model.PriceBucket;
+import com.springbootcrudexample1.model.PriceStats;
+import com.springbootcrudexample1.model.Product;
+import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.model.ProductPatch;
+import com.springbootcrudexample1.model.RepriceRequest;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * <h2>This is an interface for the custom data repository methods, MongoDB.</h2>
+ * This interface declares the database access methods which are implemented
+ * directly on the ReactiveMongoTemplate, so that each of them is a single
+ * round-trip to the database.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+public interface IProductRepositoryCustom {
+	/**
+	 * This method streams all of the products, a read action. The products are
+	 * fetched from the cursor in batches, as the subscriber requests them, and
+	 * read straight into ProductDto.
+	 * 
+	 * @param batchSize The number of documents fetched per cursor batch.
+	 * @return All of the products.
+	 */
+	Flux<ProductDto> streamAll(int batchSize);
+
+	/**
+	 * This method streams the products whose prices are within a price range, a
+	 * read action. The products are fetched from the cursor in batches, as the
+	 * subscriber requests them.
+	 * 
+	 * @param min       The minimum price.
+	 * @param max       The maximum price.
+	 * @param batchSize The number of documents fetched per cursor batch.
+	 * @return The products whose prices are within the price range.
+	 */
+	Flux<ProductDto> streamByPriceBetween(double min, double max, int batchSize);
+
+	/**
+	 * This method streams only the given fields of the products whose prices are
+	 * within a price range, a read action. Mongo sends only those fields, and
+	 * the documents are not mapped to entities.
+	 * 
+	 * @param min       The minimum price.
+	 * @param max       The maximum price.
+	 * @param fields    The document fields to read, such as _id or price.
+	 * @param batchSize The number of documents fetched per cursor batch.
+	 * @return The projected product documents.
+	 */
+	Flux<Document> streamFieldsByPriceBetween(double min, double max, Collection<String> fields, int batchSize);
+
+	/**
+	 * This method finds a page of products sorted by id, a read action. The page
+	 * starts after the given id, so it costs the same at any depth.
+	 * 
+	 * @param afterId The id of the last product of the previous page, or null for the first page.
+	 * @param limit   The maximum number of products.
+	 * @return The products of the page, sorted by id.
+	 */
+	Flux<ProductDto> findPageAfter(String afterId, int limit);
+
+	/**
+	 * This method finds a page of products within a price range sorted by price
+	 * and id, a read action. The page starts after the given price and id, so it
+	 * costs the same at any depth.
+	 * 
+	 * @param min        The minimum price.
+	 * @param max        The maximum price.
+	 * @param afterPrice The price of the last product of the previous page, or null for the first page.
+	 * @param afterId    The id of the last product of the previous page, or null for the first page.
+	 * @param limit      The maximum number of products.
+	 * @return The products of the page, sorted by price and id.
+	 */
+	Flux<ProductDto> findPriceRangePageAfter(double min, double max, Double afterPrice, String afterId, int limit);
+
+	/**
+	 * This method finds a page of products whose product numbers start with
+	 * the given prefix sorted by product number, a read action. The page starts
+	 * after the given product number, so it costs the same at any depth.
+	 * 
+	 * @param prefix          The prefix of the product numbers, matched as is.
+	 * @param afterProductNum The product number of the last product of the previous page, or null for the first page.
+	 * @param limit           The maximum number of products.
+	 * @return The products of the page, sorted by product number.
+	 */
+	Flux<ProductDto> findProductNumPrefixPageAfter(String prefix, String afterProductNum, int limit);
+
+	/**
+	 * This method finds a page of products whose names match the words of a
+	 * full-text search, a read action, sorted by decreasing relevance and id.
+	 * The page starts after the given score and id.
+	 * 
+	 * @param text       The words to search, any of them matches.
+	 * @param afterScore The text score of the last product of the previous page, or null for the first page.
+	 * @param afterId    The id of the last product of the previous page, or null for the first page.
+	 * @param limit      The maximum number of products.
+	 * @return The product documents of the page, each with its text score in a "score" field.
+	 */
+	Flux<Document> searchNamePageAfter(String text, Double afterScore, String afterId, int limit);
+
+	/**
+	 * This method replaces an existing product with the same id, an update
+	 * action, and increments its version. When the product has a version, only
+	 * that version is replaced. Nothing is written when no product matches.
+	 * 
+	 * @param product The product which replaces the existing one.
+	 * @return The replaced product, or empty if no product has the id and version.
+	 */
+	Mono<Product> replaceIfExists(Product product);
+
+	/**
+	 * This method sets and removes only the given fields of an existing
+	 * product, and increments its version. When the patch has a version, only
+	 * that version is patched. Nothing is written when no product matches.
+	 * 
+	 * @param patch The fields to set and remove.
+	 * @return The patched product, or empty if no product has the id and version.
+	 */
+	Mono<Product> patchIfExists(ProductPatch patch);
+
+	/**
+	 * This method patches a batch of products with a single bulk write of
+	 * updateOne, a partial update action. The patches of a batch are
+	 * unconditional, their versions are not checked.
+	 * 
+	 * @param patches The batch of patches.
+	 * @param offset  The position of the first patch of the batch in the request.
+	 * @param ordered True to stop at the first failed patch, false to attempt all of them.
+	 * @return The result of each patch of the batch, in order.
+	 */
+	Flux<BulkItemResult> bulkPatch(List<ProductPatch> patches, long offset, boolean ordered);
+
+	/**
+	 * This method counts the products whose prices are within the range.
+	 * 
+	 * @param min The minimum price, inclusive.
+	 * @param max The maximum price, inclusive.
+	 * @return The number of products.
+	 */
+	Mono<Long> countInPriceRange(double min, double max);
+
+	/**
+	 * This method splits the ids of the products whose prices are within the
+	 * range into buckets of about the same size. Only the bounds are read.
+	 * 
+	 * @param min     The minimum price, inclusive.
+	 * @param max     The maximum price, inclusive.
+	 * @param buckets The number of buckets.
+	 * @return The buckets in id order, each as {_id: {min, max}, count}.
+	 */
+	Flux<Document> idBucketsInPriceRange(double min, double max, int buckets);
+
+	/**
+	 * This method reprices, with a single updateMany and a pipeline update,
+	 * the products within the price range whose ids are within the bucket:
+	 * price = round(price * factor + add, scale). Their versions are
+	 * incremented. No product is read.
+	 * 
+	 * @param request The repricing.
+	 * @param fromId  The first id of the bucket, inclusive.
+	 * @param toId    The last id of the bucket, exclusive unless it is the last bucket.
+	 * @param last    True for the last bucket.
+	 * @return The numbers of products matched and modified.
+	 */
+	Mono<UpdateResult> repriceIdRange(RepriceRequest request, Object fromId, Object toId, boolean last);
+
+	/**
+	 * This method computes the statistics of the product prices in MongoDB,
+	 * with a $group aggregation stage.
+	 * 
+	 * @return The statistics, or empty if there is no product.
+	 */
+	Mono<PriceStats> priceStats();
+
+	/**
+	 * This method computes a histogram of the product prices in MongoDB, with
+	 * a $bucketAuto aggregation stage: buckets of about the same number of
+	 * products.
+	 * 
+	 * @param buckets The number of buckets.
+	 * @return The buckets, by increasing prices; fewer when there are fewer distinct prices.
+	 */
+	Flux<PriceBucket> priceHistogram(int buckets);
+
+	/**
+	 * This method removes the product with the given id, a delete action.
+	 * 
+	 * @param id The product id.
+	 * @return True if a product has been removed, false otherwise.
+	 */
+	Mono<Boolean> removeById(String id);
+
+	/**
+	 * This method writes a batch of products with a single bulkWrite, a create
+	 * and update action. Products without an id are inserted, the others are
+	 * upserted on their id. The version of the products is not taken from the
+	 * request: it is 0 on insert and incremented on every update.
+	 * 
+	 * @param products The batch of products.
+	 * @param offset   The position of the first product of the batch in the request.
+	 * @param ordered  True to stop at the first failed write, false to attempt all of them.
+	 * @return The result of each product of the batch, in order.
+	 */
+	Flux<BulkItemResult> bulkWrite(List<Product> products, long offset, boolean ordered);
+
+	/**
+	 * This method reads the usage statistics of the product collection indexes,
+	 * from the $indexStats aggregation stage.
+	 * 
+	 * @return One document per index, with its name, key and accesses.
+	 */
+	Flux<Document> indexStats();
+}
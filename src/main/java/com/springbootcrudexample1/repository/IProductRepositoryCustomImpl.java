@@ -0,0 +1,600 @@
+package com.springbootcrudexample1.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.springbootcrudexample1.model.BulkItemResult;
+import com.springbootcrudexample1.model.PriceBucket;
+import com.springbootcrudexample1.model.PriceStats;
+import com.springbootcrudexample1.model.Product;
+import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.model.ProductPatch;
+import com.springbootcrudexample1.model.RepriceRequest;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * <h2>This class implements the custom data repository methods, MongoDB.</h2>
+ * The methods are implemented with the ReactiveMongoTemplate and are picked up
+ * by Spring Data as a fragment of IProductRepository. The read methods return
+ * ProductDto, read by the ProductDtoReadConverter; as ProductDto is not a mapped
+ * entity, their queries name the document fields, such as _id, directly.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+public class IProductRepositoryCustomImpl implements IProductRepositoryCustom {
+	@Autowired
+	private ReactiveMongoTemplate template;
+
+	/**
+	 * This method streams all of the products from a single cursor.
+	 * 
+	 * @param batchSize The number of documents fetched per cursor batch.
+	 * @return All of the products.
+	 */
+	@Override
+	public Flux<ProductDto> streamAll(int batchSize) {
+		return template.find(new Query().cursorBatchSize(batchSize), ProductDto.class,
+				template.getCollectionName(Product.class));
+	}
+
+	/**
+	 * This method streams the products within a price range from a single cursor.
+	 * 
+	 * @param min       The minimum price.
+	 * @param max       The maximum price.
+	 * @param batchSize The number of documents fetched per cursor batch.
+	 * @return The products whose prices are within the price range.
+	 */
+	@Override
+	public Flux<ProductDto> streamByPriceBetween(double min, double max, int batchSize) {
+		Query query = Query.query(Criteria.where("price").gte(min).lte(max)).cursorBatchSize(batchSize);
+
+		return template.find(query, ProductDto.class, template.getCollectionName(Product.class));
+	}
+
+	/**
+	 * This method streams the projected product documents within a price range
+	 * from a single cursor. The _id is excluded unless it is requested.
+	 * 
+	 * @param min       The minimum price.
+	 * @param max       The maximum price.
+	 * @param fields    The document fields to read, such as _id or price.
+	 * @param batchSize The number of documents fetched per cursor batch.
+	 * @return The projected product documents.
+	 */
+	@Override
+	public Flux<Document> streamFieldsByPriceBetween(double min, double max, Collection<String> fields,
+			int batchSize) {
+		Query query = Query.query(Criteria.where("price").gte(min).lte(max)).cursorBatchSize(batchSize);
+		fields.forEach(query.fields()::include);
+		if (!fields.contains("_id")) {
+			query.fields().exclude("_id");
+		}
+
+		return template.find(query, Document.class, template.getCollectionName(Product.class));
+	}
+
+	/**
+	 * This method finds a page of products with a range scan on _id.
+	 * 
+	 * @param afterId The id of the last product of the previous page, or null for the first page.
+	 * @param limit   The maximum number of products.
+	 * @return The products of the page, sorted by id.
+	 */
+	@Override
+	public Flux<ProductDto> findPageAfter(String afterId, int limit) {
+		Query query = afterId == null ? new Query() : Query.query(Criteria.where("_id").gt(afterId));
+
+		return template.find(query.with(Sort.by("_id")).limit(limit), ProductDto.class,
+				template.getCollectionName(Product.class));
+	}
+
+	/**
+	 * This method finds a page of products with a range scan on (price, _id).
+	 * The price bound starts at the last price, and only the products with that
+	 * same price are filtered on the id.
+	 * 
+	 * @param min        The minimum price.
+	 * @param max        The maximum price.
+	 * @param afterPrice The price of the last product of the previous page, or null for the first page.
+	 * @param afterId    The id of the last product of the previous page, or null for the first page.
+	 * @param limit      The maximum number of products.
+	 * @return The products of the page, sorted by price and id.
+	 */
+	@Override
+	public Flux<ProductDto> findPriceRangePageAfter(double min, double max, Double afterPrice, String afterId,
+			int limit) {
+		Criteria criteria;
+		if (afterPrice == null) {
+			criteria = Criteria.where("price").gte(min).lte(max);
+		} else {
+			criteria = Criteria.where("price").gte(Math.max(min, afterPrice)).lte(max).orOperator(
+					Criteria.where("price").gt(afterPrice), Criteria.where("_id").gt(afterId));
+		}
+		Query query = Query.query(criteria).with(Sort.by("price", "_id")).limit(limit);
+
+		return template.find(query, ProductDto.class, template.getCollectionName(Product.class));
+	}
+
+	/**
+	 * This method finds a page of products with a range scan on the productNum
+	 * index: the prefix is an anchored, case-sensitive regular expression, with
+	 * its special characters escaped, which MongoDB turns into index bounds.
+	 * 
+	 * @param prefix          The prefix of the product numbers, matched as is.
+	 * @param afterProductNum The product number of the last product of the previous page, or null for the first page.
+	 * @param limit           The maximum number of products.
+	 * @return The products of the page, sorted by product number.
+	 */
+	@Override
+	public Flux<ProductDto> findProductNumPrefixPageAfter(String prefix, String afterProductNum, int limit) {
+		Criteria criteria = Criteria.where("productNum").regex("^" + escapeRegex(prefix));
+		if (afterProductNum != null) {
+			// Both conditions are on productNum, MongoDB intersects their index bounds.
+			criteria = new Criteria().andOperator(criteria, Criteria.where("productNum").gt(afterProductNum));
+		}
+		Query query = Query.query(criteria).with(Sort.by("productNum")).limit(limit);
+
+		return template.find(query, ProductDto.class, template.getCollectionName(Product.class));
+	}
+
+	/**
+	 * This method finds a page of products with the text index on name. The
+	 * matches are scored by MongoDB, and only the products after the given
+	 * score and id are sorted and sent back.
+	 * 
+	 * @param text       The words to search, any of them matches.
+	 * @param afterScore The text score of the last product of the previous page, or null for the first page.
+	 * @param afterId    The id of the last product of the previous page, or null for the first page.
+	 * @param limit      The maximum number of products.
+	 * @return The product documents of the page, each with its text score in a "score" field.
+	 */
+	@Override
+	public Flux<Document> searchNamePageAfter(String text, Double afterScore, String afterId, int limit) {
+		List<Document> pipeline = new ArrayList<>();
+		pipeline.add(new Document("$match", new Document("$text", new Document("$search", text))));
+		pipeline.add(new Document("$addFields", new Document("score", new Document("$meta", "textScore"))));
+		if (afterScore != null) {
+			pipeline.add(new Document("$match", new Document("$or",
+					List.of(new Document("score", new Document("$lt", afterScore)), new Document("score", afterScore)
+							.append("_id", new Document("$gt", documentId(afterId)))))));
+		}
+		pipeline.add(new Document("$sort", new Document("score", -1).append("_id", 1)));
+		pipeline.add(new Document("$limit", limit));
+
+		return template.getCollection(template.getCollectionName(Product.class))
+				.flatMapMany(collection -> Flux.from(collection.aggregate(pipeline)));
+	}
+
+	/**
+	 * This method escapes the characters of a regular expression which are not
+	 * letters or digits, so the text is matched as is.
+	 */
+	private static String escapeRegex(String text) {
+		StringBuilder escaped = new StringBuilder(text.length() * 2);
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (!Character.isLetterOrDigit(c)) {
+				escaped.append('\\');
+			}
+			escaped.append(c);
+		}
+		return escaped.toString();
+	}
+
+	/**
+	 * This method replaces the fields of an existing product, and increments
+	 * its version, with a single findOneAndUpdate. With a version, the filter
+	 * also matches the version, a compare-and-set.
+	 * 
+	 * @param product The product which replaces the existing one.
+	 * @return The replaced product, or empty if no product has the id and version.
+	 */
+	@Override
+	public Mono<Product> replaceIfExists(Product product) {
+		Query query = Query.query(Criteria.where("_id").is(product.getId()));
+		if (product.getVersion() != null) {
+			query.addCriteria(Criteria.where("version").is(product.getVersion()));
+		}
+		// The fields are set, or unset when null, as the replacement would store them.
+		Update update = new Update().set("price", product.getPrice()).inc("version", 1);
+		setOrUnset(update, "productNum", product.getProductNum());
+		setOrUnset(update, "name", product.getName());
+
+		return template.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), Product.class);
+	}
+
+	/**
+	 * This method patches an existing product with a single findOneAndUpdate of
+	 * only the given fields. With a version, the filter also matches the
+	 * version, a compare-and-set.
+	 * 
+	 * @param patch The fields to set and remove.
+	 * @return The patched product, or empty if no product has the id and version.
+	 */
+	@Override
+	public Mono<Product> patchIfExists(ProductPatch patch) {
+		Query query = Query.query(Criteria.where("_id").is(patch.getId()));
+		if (patch.getVersion() != null) {
+			query.addCriteria(Criteria.where("version").is(patch.getVersion()));
+		}
+		Update update = new Update().inc("version", 1);
+		patch.getSet().forEach(update::set);
+		patch.getUnset().forEach(update::unset);
+
+		return template.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), Product.class);
+	}
+
+	/**
+	 * This method patches a batch of products with a single bulkWrite of
+	 * updateOne on the driver collection. Only when fewer products matched than
+	 * were patched are the ids of the batch looked up, to report the missing
+	 * ones.
+	 * 
+	 * @param patches The batch of patches.
+	 * @param offset  The position of the first patch of the batch in the request.
+	 * @param ordered True to stop at the first failed patch, false to attempt all of them.
+	 * @return The result of each patch of the batch, in order.
+	 */
+	@Override
+	public Flux<BulkItemResult> bulkPatch(List<ProductPatch> patches, long offset, boolean ordered) {
+		List<WriteModel<Document>> models = new ArrayList<>(patches.size());
+		for (ProductPatch patch : patches) {
+			Document update = new Document("$inc", new Document("version", 1));
+			if (!patch.getSet().isEmpty()) {
+				update.append("$set", new Document(patch.getSet()));
+			}
+			if (!patch.getUnset().isEmpty()) {
+				Document unset = new Document();
+				patch.getUnset().forEach(field -> unset.append(field, ""));
+				update.append("$unset", unset);
+			}
+			models.add(new UpdateOneModel<>(Filters.eq("_id", documentId(patch.getId())), update));
+		}
+		String[] errors = new String[patches.size()];
+
+		return template.getCollection(template.getCollectionName(Product.class))
+				.flatMapMany(collection -> Mono
+						.from(collection.bulkWrite(models, new BulkWriteOptions().ordered(ordered)))
+						.onErrorResume(MongoBulkWriteException.class, ex -> {
+							ex.getWriteErrors().forEach(error -> errors[error.getIndex()] = error.getMessage());
+							return Mono.just(ex.getWriteResult());
+						})
+						.flatMap(result -> findMissingIds(collection, patches, errors, ordered, result.getMatchedCount()))
+						.flatMapIterable(missing -> toPatchResults(patches, offset, errors, ordered, missing)));
+	}
+
+	/**
+	 * This method finds the ids of the attempted patches without product, when
+	 * some of them did not match.
+	 */
+	private static Mono<Set<String>> findMissingIds(MongoCollection<Document> collection, List<ProductPatch> patches,
+			String[] errors, boolean ordered, int matched) {
+		Set<Object> attempted = new HashSet<>();
+		int attempts = 0;
+		for (int i = 0; i < patches.size(); i++) {
+			if (errors[i] != null) {
+				// An ordered bulk write stops at its first error.
+				if (ordered) {
+					break;
+				}
+				continue;
+			}
+			attempted.add(documentId(patches.get(i).getId()));
+			attempts++;
+		}
+		if (matched >= attempts) {
+			return Mono.just(Set.of());
+		}
+
+		return Flux.from(collection.find(Filters.in("_id", attempted)).projection(Projections.include("_id")))
+				.map(document -> document.get("_id").toString()).collect(Collectors.toSet())
+				.map(existing -> {
+					Set<String> missing = new HashSet<>();
+					attempted.forEach(id -> {
+						if (!existing.contains(id.toString())) {
+							missing.add(id.toString());
+						}
+					});
+					return missing;
+				});
+	}
+
+	/**
+	 * This method makes the result of each patch of a batch.
+	 */
+	private static List<BulkItemResult> toPatchResults(List<ProductPatch> patches, long offset, String[] errors,
+			boolean ordered, Set<String> missing) {
+		List<BulkItemResult> results = new ArrayList<>(patches.size());
+		boolean failed = false;
+		for (int i = 0; i < patches.size(); i++) {
+			String id = patches.get(i).getId();
+			String status;
+			if (errors[i] != null) {
+				status = BulkItemResult.FAILED;
+			} else if (ordered && failed) {
+				status = BulkItemResult.SKIPPED;
+			} else if (missing.contains(id)) {
+				status = BulkItemResult.MISSING;
+			} else {
+				status = BulkItemResult.PATCHED;
+			}
+			failed |= errors[i] != null;
+			results.add(new BulkItemResult(offset + i, id, status, errors[i]));
+		}
+		return results;
+	}
+
+	/**
+	 * This method converts a product id to its stored _id, an ObjectId when
+	 * the id is a valid one, as the Product mapping does.
+	 */
+	private static Object documentId(String id) {
+		return ObjectId.isValid(id) ? new ObjectId(id) : id;
+	}
+
+	private static void setOrUnset(Update update, String field, Object value) {
+		if (value == null) {
+			update.unset(field);
+		} else {
+			update.set(field, value);
+		}
+	}
+
+	/**
+	 * This method removes the product with a single deleteOne.
+	 * 
+	 * @param id The product id.
+	 * @return True if a product has been removed, false otherwise.
+	 */
+	@Override
+	public Mono<Boolean> removeById(String id) {
+		Query query = Query.query(Criteria.where("id").is(id));
+
+		return template.remove(query, Product.class).map(result -> result.getDeletedCount() > 0);
+	}
+
+	/**
+	 * This method writes a batch of products with a single bulkWrite on the
+	 * driver collection. The products are mapped with the template converter, so
+	 * the stored documents are the same as the ones written by the repository.
+	 * The version sent with a product is ignored: an inserted product gets
+	 * version 0, and an upsert of an existing product increments its version
+	 * in the same update, as replaceIfExists does without a version.
+	 * 
+	 * @param products The batch of products.
+	 * @param offset   The position of the first product of the batch in the request.
+	 * @param ordered  True to stop at the first failed write, false to attempt all of them.
+	 * @return The result of each product of the batch, in order.
+	 */
+	@Override
+	public Flux<BulkItemResult> bulkWrite(List<Product> products, long offset, boolean ordered) {
+		List<Document> documents = new ArrayList<>(products.size());
+		List<WriteModel<Document>> models = new ArrayList<>(products.size());
+
+		for (Product product : products) {
+			Document document = new Document();
+			template.getConverter().write(product, document);
+			documents.add(document);
+
+			if (document.get("_id") == null) {
+				// The driver generates the _id into the document on insert.
+				document.put("version", 0L);
+				models.add(new InsertOneModel<>(document));
+			} else {
+				models.add(new UpdateOneModel<>(Filters.eq("_id", document.get("_id")), upsertPipeline(document),
+						new UpdateOptions().upsert(true)));
+			}
+		}
+
+		return template.getCollection(template.getCollectionName(Product.class))
+				.flatMap(collection -> Mono.from(collection.bulkWrite(models, new BulkWriteOptions().ordered(ordered))))
+				.map(result -> toResults(documents, models, offset, result, null, ordered))
+				.onErrorResume(MongoBulkWriteException.class,
+						ex -> Mono.just(toResults(documents, models, offset, ex.getWriteResult(), ex, ordered)))
+				.flatMapIterable(results -> results);
+	}
+
+	/**
+	 * This method makes the update pipeline which writes a product as its
+	 * replacement would, except for the version: 0 for a new document,
+	 * otherwise the stored version plus one. The values are literals, so a
+	 * string starting with "$" is not read as a field path.
+	 */
+	private static List<Document> upsertPipeline(Document document) {
+		Document set = new Document();
+		document.forEach((field, value) -> {
+			if (!"_id".equals(field) && !"version".equals(field)) {
+				set.append(field, new Document("$literal", value));
+			}
+		});
+		set.append("version", new Document("$add", List.of(new Document("$ifNull", List.of("$version", -1)), 1)));
+
+		List<String> unset = new ArrayList<>();
+		for (String field : List.of("productNum", "name")) {
+			if (!document.containsKey(field)) {
+				unset.add(field);
+			}
+		}
+		return unset.isEmpty() ? List.of(new Document("$set", set))
+				: List.of(new Document("$set", set), new Document("$unset", unset));
+	}
+
+	/**
+	 * This method maps the driver result of a bulkWrite to the result of each
+	 * product.
+	 */
+	private List<BulkItemResult> toResults(List<Document> documents, List<WriteModel<Document>> models, long offset,
+			BulkWriteResult result, MongoBulkWriteException ex, boolean ordered) {
+		Set<Integer> upserted = new HashSet<>();
+		for (BulkWriteUpsert upsert : result.getUpserts()) {
+			upserted.add(upsert.getIndex());
+		}
+
+		String[] errors = new String[documents.size()];
+		int firstError = documents.size();
+		if (ex != null) {
+			for (BulkWriteError error : ex.getWriteErrors()) {
+				errors[error.getIndex()] = error.getMessage();
+				firstError = Math.min(firstError, error.getIndex());
+			}
+		}
+
+		List<BulkItemResult> results = new ArrayList<>(documents.size());
+		for (int i = 0; i < documents.size(); i++) {
+			Object id = documents.get(i).get("_id");
+			String status;
+			if (errors[i] != null) {
+				status = BulkItemResult.FAILED;
+			} else if (ordered && i > firstError) {
+				status = BulkItemResult.SKIPPED;
+			} else if (models.get(i) instanceof InsertOneModel || upserted.contains(i)) {
+				status = BulkItemResult.INSERTED;
+			} else {
+				status = BulkItemResult.REPLACED;
+			}
+			results.add(new BulkItemResult(offset + i, id == null ? null : id.toString(), status, errors[i]));
+		}
+		return results;
+	}
+
+	/**
+	 * This method counts the products whose prices are within the range, from
+	 * the (price, _id) index.
+	 * 
+	 * @param min The minimum price, inclusive.
+	 * @param max The maximum price, inclusive.
+	 * @return The number of products.
+	 */
+	@Override
+	public Mono<Long> countInPriceRange(double min, double max) {
+		return template.count(Query.query(Criteria.where("price").gte(min).lte(max)), Product.class);
+	}
+
+	/**
+	 * This method splits the ids of the products whose prices are within the
+	 * range with the $bucketAuto aggregation stage. Only the bounds and counts
+	 * of the buckets are read.
+	 * 
+	 * @param min     The minimum price, inclusive.
+	 * @param max     The maximum price, inclusive.
+	 * @param buckets The number of buckets.
+	 * @return The buckets in id order, each as {_id: {min, max}, count}.
+	 */
+	@Override
+	public Flux<Document> idBucketsInPriceRange(double min, double max, int buckets) {
+		List<Document> pipeline = List.of(
+				new Document("$match", new Document("price", new Document("$gte", min).append("$lte", max))),
+				new Document("$project", new Document("_id", 1)),
+				new Document("$bucketAuto", new Document("groupBy", "$_id").append("buckets", buckets)));
+
+		return template.getCollection(template.getCollectionName(Product.class))
+				.flatMapMany(collection -> Flux.from(collection.aggregate(pipeline).allowDiskUse(true)));
+	}
+
+	/**
+	 * This method reprices the products of a bucket with a single updateMany
+	 * of an aggregation pipeline, so the new prices are computed by MongoDB
+	 * from the stored ones.
+	 * 
+	 * @param request The repricing.
+	 * @param fromId  The first id of the bucket, inclusive.
+	 * @param toId    The last id of the bucket, exclusive unless it is the last bucket.
+	 * @param last    True for the last bucket.
+	 * @return The numbers of products matched and modified.
+	 */
+	@Override
+	public Mono<UpdateResult> repriceIdRange(RepriceRequest request, Object fromId, Object toId, boolean last) {
+		Document filter = new Document("price",
+				new Document("$gte", request.getMin()).append("$lte", request.getMax())).append("_id",
+						new Document("$gte", fromId).append(last ? "$lte" : "$lt", toId));
+		Document price = new Document("$round", List.of(new Document("$add",
+				List.of(new Document("$multiply", List.of("$price", request.getFactor())), request.getAdd())),
+				request.getScale()));
+		Document version = new Document("$add", List.of(new Document("$ifNull", List.of("$version", 0)), 1));
+		List<Document> update = List.of(new Document("$set", new Document("price", price).append("version", version)));
+
+		return template.getCollection(template.getCollectionName(Product.class))
+				.flatMap(collection -> Mono.from(collection.updateMany(filter, update)));
+	}
+
+	/**
+	 * This method computes the statistics of the product prices with a single
+	 * $group of the whole collection; only the result is sent back.
+	 * 
+	 * @return The statistics, or empty if there is no product.
+	 */
+	@Override
+	public Mono<PriceStats> priceStats() {
+		Aggregation aggregation = Aggregation.newAggregation(Aggregation.group().count().as("count").min("price")
+				.as("min").max("price").as("max").avg("price").as("avg"));
+
+		return template.aggregate(aggregation, Product.class, PriceStats.class).next();
+	}
+
+	/**
+	 * This method computes a histogram of the product prices with a single
+	 * $bucketAuto; only the bounds and counts of the buckets are sent back.
+	 * 
+	 * @param buckets The number of buckets.
+	 * @return The buckets, by increasing prices.
+	 */
+	@Override
+	public Flux<PriceBucket> priceHistogram(int buckets) {
+		Aggregation aggregation = Aggregation.newAggregation(Aggregation.bucketAuto("price", buckets))
+				.withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+		return template.aggregate(aggregation, Product.class, Document.class).map(bucket -> {
+			Document bounds = bucket.get("_id", Document.class);
+			return new PriceBucket(((Number) bounds.get("min")).doubleValue(),
+					((Number) bounds.get("max")).doubleValue(), ((Number) bucket.get("count")).longValue());
+		});
+	}
+
+	/**
+	 * This method runs the $indexStats aggregation stage on the product collection.
+	 * 
+	 * @return One document per index, with its name, key and accesses.
+	 */
+	@Override
+	public Flux<Document> indexStats() {
+		List<Document> pipeline = List.of(new Document("$indexStats", new Document()));
+
+		return template.getCollection(template.getCollectionName(Product.class))
+				.flatMapMany(collection -> Flux.from(collection.aggregate(pipeline)));
+	}
+}
@@ -0,0 +1,129 @@
+package com.springbootcrudexample1.service;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.springbootcrudexample1.metrics.ProductMetrics;
+import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.repository.IProductRepository;
+import com.springbootcrudexample1.utils.AppUtils;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.Sinks;
+
+/**
+ * <h2>This class loads the products by id in batches.</h2>
+ * The ids requested within "products.batch-loader.max-wait" of each other, up
+ * to "products.batch-loader.max-batch" of them, are read with a single $in
+ * query, and each product is handed back to the load waiting for it. Under a
+ * burst of reads by id this replaces many findById queries by a few
+ * findAllById queries, for at most max-wait of added latency.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+@Slf4j
+@Component
+public class ProductBatchLoader {
+	private final Sinks.Many<PendingLoad> pendingLoads = Sinks.many().unicast().onBackpressureBuffer();
+
+	private final IProductRepository repository;
+	private final ProductMetrics metrics;
+	private final int maxBatch;
+	private final Duration maxWait;
+	private Disposable batches;
+
+	/**
+	 * This constructor configures the batches.
+	 * 
+	 * @param repository The product repository.
+	 * @param metrics    The product metrics.
+	 * @param maxBatch   The maximum number of ids read by a query.
+	 * @param maxWait    The maximum time an id waits for its batch.
+	 */
+	public ProductBatchLoader(IProductRepository repository, ProductMetrics metrics,
+			@Value("${products.batch-loader.max-batch:100}") int maxBatch,
+			@Value("${products.batch-loader.max-wait:PT0.002S}") Duration maxWait) {
+		this.repository = repository;
+		this.metrics = metrics;
+		this.maxBatch = maxBatch;
+		this.maxWait = maxWait;
+	}
+
+	/**
+	 * This method starts gathering the ids into batches.
+	 */
+	@PostConstruct
+	public void start() {
+		// The batches are buffered, so the timer of bufferTimeout never lacks a request.
+		batches = pendingLoads.asFlux().bufferTimeout(maxBatch, maxWait).onBackpressureBuffer()
+				.flatMap(this::loadBatch).subscribe();
+	}
+
+	/**
+	 * This method stops gathering the ids.
+	 */
+	@PreDestroy
+	public void stop() {
+		batches.dispose();
+	}
+
+	/**
+	 * This method loads the product with the given id, with the other ids
+	 * requested at the same time.
+	 * 
+	 * @param id The product id.
+	 * @return The product, or empty if it does not exist.
+	 */
+	public Mono<ProductDto> load(String id) {
+		return Mono.create(sink -> emit(new PendingLoad(id, sink)));
+	}
+
+	private Mono<Void> loadBatch(List<PendingLoad> batch) {
+		Set<String> ids = new LinkedHashSet<>();
+		batch.forEach(pendingLoad -> ids.add(pendingLoad.id));
+
+		return metrics.timeRepository("findAllById", repository.findAllById(ids)).map(AppUtils::entityToDto)
+				.collectMap(ProductDto::getId)
+				.doOnNext(products -> complete(batch, products))
+				.doOnError(ex -> batch.forEach(pendingLoad -> pendingLoad.sink.error(ex)))
+				// A failed batch fails its own loads only, the following batches are still read.
+				.onErrorResume(ex -> {
+					log.warn("Failed to load a batch of {} products", ids.size(), ex);
+					return Mono.empty();
+				}).then();
+	}
+
+	private static void complete(List<PendingLoad> batch, Map<String, ProductDto> products) {
+		// A missing product completes its load empty.
+		batch.forEach(pendingLoad -> pendingLoad.sink.success(products.get(pendingLoad.id)));
+	}
+
+	private synchronized void emit(PendingLoad pendingLoad) {
+		pendingLoads.tryEmitNext(pendingLoad).orThrow();
+	}
+
+	private static class PendingLoad {
+		private final String id;
+		private final MonoSink<ProductDto> sink;
+
+		private PendingLoad(String id, MonoSink<ProductDto> sink) {
+			this.id = id;
+			this.sink = sink;
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package com.springbootcrudexample1.service;
+
+/**
+ * <h2>This class signals a write to an outdated version of a product.</h2>
+ * The product has been updated since the given version was read; the client
+ * should read the product again and retry.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+public class ProductConflictException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * This constructor creates the exception for a product and its outdated version.
+	 * 
+	 * @param id      The product id.
+	 * @param version The outdated version.
+	 */
+	public ProductConflictException(String id, Long version) {
+		super("Product " + id + " is no longer at version " + version);
+	}
+}
@@ -1,13 +1,47 @@
 package com.springbootcrudexample1.service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Range;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.codec.DecodingException;
 import org.springframework.stereotype.Service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.springbootcrudexample1.cache.OffHeapProductStore;
+import com.springbootcrudexample1.cache.ProductCache;
+import com.springbootcrudexample1.cache.ProductPriceIndex;
+import com.springbootcrudexample1.event.ProductCatalogVersion;
+import com.springbootcrudexample1.event.ProductEventPublisher;
+import com.springbootcrudexample1.metrics.ProductMetrics;
+import com.springbootcrudexample1.model.BulkItemResult;
+import com.springbootcrudexample1.model.PriceBucket;
+import com.springbootcrudexample1.model.PriceStats;
+import com.springbootcrudexample1.model.Product;
 import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.model.ProductEvent;
+import com.springbootcrudexample1.model.ProductLookupResult;
+import com.springbootcrudexample1.model.ProductPage;
+import com.springbootcrudexample1.model.ProductPatch;
+import com.springbootcrudexample1.model.RepriceJob;
+import com.springbootcrudexample1.model.RepriceRequest;
 import com.springbootcrudexample1.repository.IProductRepository;
 import com.springbootcrudexample1.utils.AppUtils;
+import com.springbootcrudexample1.utils.ProductCursor;
 
 import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.Flux;
@@ -29,43 +63,362 @@ import reactor.core.publisher.Mono;
 @Service
 @RequiredArgsConstructor
 public class ProductService {
+	// The ProductDto property names which can be projected, and their document fields.
+	private static final Map<String, String> PROJECTION_FIELDS = Map.of("id", "_id", "productNum", "productNum",
+			"name", "name", "price", "price", "version", "version");
+
 	@Autowired
 	private IProductRepository repository;
 
+	@Autowired
+	private ObjectReader productDtoReader;
+
+	@Autowired
+	private ProductCache productCache;
+
+	@Autowired
+	private ProductBatchLoader batchLoader;
+
+	@Autowired(required = false)
+	private ProductPriceIndex priceIndex;
+
+	@Autowired(required = false)
+	private OffHeapProductStore offHeapStore;
+
+	@Autowired
+	private ProductEventPublisher events;
+
+	@Autowired
+	private ProductMetrics metrics;
+
+	@Autowired
+	private ProductCatalogVersion catalogVersion;
+
+	@Value("${products.bulk.batch-size:500}")
+	private int bulkBatchSize;
+
+	@Value("${products.stream.cursor-batch-size:256}")
+	private int cursorBatchSize;
+
+	@Value("${products.page.max-limit:1000}")
+	private int maxPageLimit;
+
+	@Value("${products.multi-get.max-ids:1000}")
+	private int maxMultiGetIds;
+
+	@Value("${products.histogram.max-buckets:1000}")
+	private int maxHistogramBuckets;
+
+	@Value("${products.reprice.chunk-size:10000}")
+	private int repriceChunkSize;
+
+	@Value("${products.reprice.job-retention:PT1H}")
+	private Duration repriceJobRetention;
+
+	// The repricing jobs of this instance, kept until "products.reprice.job-retention" after they finish.
+	private final Map<String, RepriceJob> repriceJobs = new ConcurrentHashMap<>();
+
 	/**
-	 * This method find all the products in the database.
+	 * This method find all the products in the database. The products are
+	 * streamed from the cursor, "products.stream.cursor-batch-size" documents at
+	 * a time, as the subscriber requests them, or decoded from the off-heap
+	 * store when it is enabled and loaded.
 	 * 
 	 * @return All of the products in the database.
 	 */
 	public Flux<ProductDto> getAllProducts() {
-		if (repository.findAll() == null) {
-			return null;
-		}
-		return repository.findAll().map(AppUtils::entityToDto);
+		return Flux.defer(() -> {
+			if (offHeapStore != null && offHeapStore.isReady()) {
+				return offHeapStore.all();
+			}
+			return metrics.timeRepository("streamAll", repository.streamAll(cursorBatchSize))
+					.limitRate(cursorBatchSize);
+		});
 	}
 
 	/**
-	 * This method finds a product with the specified id.
+	 * This method finds a product with the specified id. The product is read
+	 * through the product cache, which the write methods keep up to date, and
+	 * a miss is read in a batch with the other ids missed at the same time.
+	 * When the off-heap store is enabled and loaded, it holds every product and
+	 * is read instead.
 	 * 
 	 * @param id The specified id.
 	 * @return The product with the specified id.
 	 */
 	public Mono<ProductDto> getProductById(String id) {
-		if (repository.findById(id) == null) {
-			return null;
-		}
-		return repository.findById(id).map(AppUtils::entityToDto);
+		return Mono.defer(() -> {
+			if (offHeapStore != null && offHeapStore.isReady()) {
+				return offHeapStore.get(id);
+			}
+			return productCache.get(id, batchLoader::load);
+		});
 	}
 
 	/**
-	 * This method finds the products between a price range.
+	 * This method finds the products with the given ids, with one query. The
+	 * results follow the order of the ids, and report the ids without product.
+	 * At most "products.multi-get.max-ids" ids can be given.
+	 * 
+	 * @param ids The product ids, possibly repeated.
+	 * @return The result of each id, in the order of the ids.
+	 */
+	public Flux<ProductLookupResult> getProductsByIds(List<String> ids) {
+		return Flux.defer(() -> {
+			if (ids.size() > maxMultiGetIds) {
+				throw new IllegalArgumentException("At most " + maxMultiGetIds + " ids can be requested");
+			}
+
+			return metrics.timeRepository("findAllById", repository.findAllById(new LinkedHashSet<>(ids)))
+					.map(AppUtils::entityToDto)
+					.collectMap(ProductDto::getId)
+					.flatMapIterable(products -> ids.stream().map(id -> {
+						ProductDto product = products.get(id);
+						return new ProductLookupResult(id,
+								product == null ? ProductLookupResult.MISSING : ProductLookupResult.FOUND, product);
+					}).collect(Collectors.toList()));
+		});
+	}
+
+	/**
+	 * This method finds the products between a price range. The products are
+	 * read from the in-memory price index when it is enabled and loaded,
+	 * otherwise they are streamed from the cursor, as for getAllProducts.
 	 * 
 	 * @param min The minimum price.
 	 * @param max The maximum price.
 	 * @return The products between a price range.
 	 */
 	public Flux<ProductDto> getProductInRange(double min, double max) {
-		return repository.findByPriceBetween(Range.closed(min, max));
+		return Flux.defer(() -> {
+			if (priceIndex != null && priceIndex.isReady()) {
+				return priceIndex.findByPriceBetween(min, max);
+			}
+			return metrics.timeRepository("streamByPriceBetween",
+					repository.streamByPriceBetween(min, max, cursorBatchSize)).limitRate(cursorBatchSize);
+		});
+	}
+
+	/**
+	 * This method finds only the given fields of the products between a price
+	 * range. Mongo sends only those fields, and they are copied from the
+	 * documents without mapping them to Product or ProductDto.
+	 * 
+	 * @param min    The minimum price.
+	 * @param max    The maximum price.
+	 * @param fields The ProductDto property names: id, productNum, name, price or version.
+	 * @return The fields of the products between a price range.
+	 */
+	public Flux<Map<String, Object>> getProductInRange(double min, double max, List<String> fields) {
+		return Flux.defer(() -> {
+			Set<String> documentFields = new LinkedHashSet<>();
+			for (String field : fields) {
+				String documentField = PROJECTION_FIELDS.get(field.trim());
+				if (documentField == null) {
+					throw new IllegalArgumentException("Unknown product field: " + field);
+				}
+				documentFields.add(documentField);
+			}
+			if (documentFields.isEmpty()) {
+				throw new IllegalArgumentException("At least one product field is required");
+			}
+
+			return metrics.timeRepository("streamFieldsByPriceBetween",
+					repository.streamFieldsByPriceBetween(min, max, documentFields, cursorBatchSize))
+					.map(AppUtils::documentToFields).limitRate(cursorBatchSize);
+		});
+	}
+
+	/**
+	 * This method finds a page of products, sorted by id. The limit is capped at
+	 * "products.page.max-limit".
+	 * 
+	 * @param after The cursor of the previous page, or null for the first page.
+	 * @param limit The maximum number of products.
+	 * @return The page of products, with the cursor of the next page.
+	 */
+	public Mono<ProductPage> getProductsPage(String after, int limit) {
+		return Mono.defer(() -> {
+			String afterId = after == null ? null : ProductCursor.decodeId(after).getId();
+			int size = Math.min(limit, maxPageLimit);
+
+			return metrics.timeRepository("findPageAfter", repository.findPageAfter(afterId, size + 1)).collectList()
+					.map(products -> toPage(products, size, ProductCursor::encodeId));
+		});
+	}
+
+	/**
+	 * This method finds a page of products between a price range, sorted by
+	 * price and id. The limit is capped at "products.page.max-limit".
+	 * 
+	 * @param min   The minimum price.
+	 * @param max   The maximum price.
+	 * @param after The cursor of the previous page, or null for the first page.
+	 * @param limit The maximum number of products.
+	 * @return The page of products, with the cursor of the next page.
+	 */
+	public Mono<ProductPage> getProductInRangePage(double min, double max, String after, int limit) {
+		return Mono.defer(() -> {
+			ProductCursor cursor = after == null ? null : ProductCursor.decodePriceId(after);
+			int size = Math.min(limit, maxPageLimit);
+
+			return metrics.timeRepository("findPriceRangePageAfter",
+					repository.findPriceRangePageAfter(min, max, cursor == null ? null : cursor.getPrice(),
+							cursor == null ? null : cursor.getId(), size + 1))
+					.collectList()
+					.map(products -> toPage(products, size, ProductCursor::encodePriceId));
+		});
+	}
+
+	/**
+	 * This method finds a page of products whose product numbers start with
+	 * the given prefix, sorted by product number. The limit is capped at
+	 * "products.page.max-limit".
+	 * 
+	 * @param prefix The prefix of the product numbers, case-sensitive.
+	 * @param after  The cursor of the previous page, or null for the first page.
+	 * @param limit  The maximum number of products.
+	 * @return The page of products, with the cursor of the next page.
+	 */
+	public Mono<ProductPage> searchByProductNumPrefix(String prefix, String after, int limit) {
+		return Mono.defer(() -> {
+			if (prefix == null || prefix.isEmpty()) {
+				throw new IllegalArgumentException("productNum prefix must not be empty");
+			}
+			String afterProductNum = after == null ? null : ProductCursor.decodeProductNum(after).getProductNum();
+			int size = Math.min(limit, maxPageLimit);
+
+			return metrics.timeRepository("findProductNumPrefixPageAfter",
+					repository.findProductNumPrefixPageAfter(prefix, afterProductNum, size + 1)).collectList()
+					.map(products -> toPage(products, size, ProductCursor::encodeProductNum));
+		});
+	}
+
+	/**
+	 * This method finds a page of products whose names match the words of a
+	 * full-text search, the most relevant first. The limit is capped at
+	 * "products.page.max-limit".
+	 * 
+	 * @param text  The words to search, any of them matches.
+	 * @param after The cursor of the previous page, or null for the first page.
+	 * @param limit The maximum number of products.
+	 * @return The page of products, with the cursor of the next page.
+	 */
+	public Mono<ProductPage> searchByName(String text, String after, int limit) {
+		return Mono.defer(() -> {
+			if (text == null || text.isBlank()) {
+				throw new IllegalArgumentException("name search must not be blank");
+			}
+			ProductCursor cursor = after == null ? null : ProductCursor.decodeScoreId(after);
+			int size = Math.min(limit, maxPageLimit);
+
+			return metrics.timeRepository("searchNamePageAfter",
+					repository.searchNamePageAfter(text, cursor == null ? null : cursor.getScore(),
+							cursor == null ? null : cursor.getId(), size + 1))
+					.collectList().map(documents -> {
+						List<Document> matches = documents.subList(0, Math.min(size, documents.size()));
+						List<ProductDto> items = matches.stream().map(AppUtils::documentToDto)
+								.collect(Collectors.toList());
+						if (documents.size() <= size) {
+							return new ProductPage(items, null);
+						}
+						Document last = matches.get(size - 1);
+						return new ProductPage(items, ProductCursor.encodeScoreId(
+								((Number) last.get("score")).doubleValue(), items.get(size - 1).getId()));
+					});
+		});
+	}
+
+	/**
+	 * This method makes a page from the products read, one more than the page
+	 * size when there is a next page.
+	 */
+	private ProductPage toPage(List<ProductDto> products, int size, Function<ProductDto, String> cursor) {
+		if (products.size() <= size) {
+			return new ProductPage(products, null);
+		}
+		List<ProductDto> items = products.subList(0, size);
+		return new ProductPage(items, cursor.apply(items.get(size - 1)));
+	}
+
+	/**
+	 * This method computes the count, minimum, maximum and average of the
+	 * product prices, in MongoDB.
+	 * 
+	 * @return The statistics of the product prices, with count 0 if there is no product.
+	 */
+	public Mono<PriceStats> getPriceStats() {
+		return metrics.timeRepository("priceStats", repository.priceStats())
+				.defaultIfEmpty(new PriceStats(0, null, null, null));
+	}
+
+	/**
+	 * This method computes a histogram of the product prices, in MongoDB, with
+	 * at most "products.histogram.max-buckets" buckets of about the same number
+	 * of products.
+	 * 
+	 * @param buckets The number of buckets.
+	 * @return The buckets, by increasing prices.
+	 */
+	public Flux<PriceBucket> getPriceHistogram(int buckets) {
+		return Flux.defer(() -> {
+			if (buckets < 1 || buckets > maxHistogramBuckets) {
+				throw new IllegalArgumentException("buckets must be between 1 and " + maxHistogramBuckets);
+			}
+			return metrics.timeRepository("priceHistogram", repository.priceHistogram(buckets));
+		});
+	}
+
+	/**
+	 * This method gets the current version of the product catalog, changed by
+	 * every product event.
+	 * 
+	 * @return The version, with its ETag and last modification time.
+	 */
+	public ProductCatalogVersion.Version getCatalogVersion() {
+		return catalogVersion.get();
+	}
+
+	/**
+	 * This method reads the statistics of the product cache.
+	 * 
+	 * @return The hits, misses, evictions and size of the product cache.
+	 */
+	public Map<String, Object> getCacheStats() {
+		CacheStats stats = productCache.stats();
+		Map<String, Object> cacheStats = new LinkedHashMap<>();
+
+		cacheStats.put("size", productCache.size());
+		cacheStats.put("hits", stats.hitCount());
+		cacheStats.put("misses", stats.missCount());
+		cacheStats.put("hitRate", stats.hitRate());
+		cacheStats.put("evictions", stats.evictionCount());
+		cacheStats.put("averageLoadNanos", stats.averageLoadPenalty());
+		return cacheStats;
+	}
+
+	/**
+	 * This method reads the memory statistics of the off-heap product store.
+	 * 
+	 * @return The products, bytes and bytes per product of the store, or only "enabled" false.
+	 */
+	public Map<String, Object> getOffHeapStoreStats() {
+		if (offHeapStore == null) {
+			return Map.of("enabled", false);
+		}
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("enabled", true);
+		stats.putAll(offHeapStore.stats());
+		return stats;
+	}
+
+	/**
+	 * This method reads the usage statistics of the product indexes.
+	 * 
+	 * @return One document per index, with its name, key and accesses.
+	 */
+	public Flux<Document> getIndexStats() {
+		return metrics.timeRepository("indexStats", repository.indexStats());
 	}
 
 	/**
@@ -75,71 +428,413 @@ public class ProductService {
 	 * @param productDtoMono A product data transfer object.
 	 * @return A product data transfer object.
 	 */
+	public Mono<ProductDto> saveProduct(Mono<ProductDto> productDtoMono) {
+		return countParseFailures(productDtoMono, "save").map(AppUtils::dtoToEntity)
+				.flatMap(product -> metrics.timeRepository("insert", repository.insert(product)))
+				.map(AppUtils::entityToDto)
+				.doOnNext(productCache::put).doOnNext(
+						saved -> events.publishLocal(new ProductEvent(ProductEvent.CREATED, saved.getId(), saved)));
+	}
+
+	/**
+	 * This method, from the JSON string representation of a product, creates the
+	 * product entity and saves it to the database.
+	 * 
+	 * @param productJsonString The product in the form of JSON string.
+	 * @return A product data transfer object.
+	 */
 	public Mono<ProductDto> saveProduct(String productJsonString) {
-		try {
-			// Map the JSON string representation of the product to the product data
-			// transfer object.
-			ProductDto productDto = new ObjectMapper().readValue(productJsonString, ProductDto.class);
-			// Justify the product data transfer object as a single flux object.
-			Mono<ProductDto> productDtoMono = Mono.just(productDto);
-
-			return productDtoMono.map(AppUtils::dtoToEntity).flatMap(repository::insert).map(AppUtils::entityToDto);
-		} catch (Exception ex) {
-			System.err.println("\nError: \n" + ex + "\n");
-			return null;
-		}
+		return saveProduct(readProduct(productJsonString));
+	}
+
+	/**
+	 * This method saves a stream of product data transfer objects to the
+	 * database. The products are written in batches of "products.bulk.batch-size",
+	 * each batch with a single bulkWrite. In ordered mode, the batches after a
+	 * failed write are not written and their products are reported as skipped.
+	 * 
+	 * @param productDtoFlux The product data transfer objects.
+	 * @param ordered        True to stop at the first failed write, false to attempt all of them.
+	 * @return The result of each product, in the order of the request.
+	 */
+	public Flux<BulkItemResult> saveProducts(Flux<ProductDto> productDtoFlux, boolean ordered) {
+		AtomicBoolean failed = new AtomicBoolean();
+
+		return productDtoFlux.map(AppUtils::dtoToEntity).buffer(bulkBatchSize).index().concatMap(batch -> {
+			long offset = batch.getT1() * bulkBatchSize;
+			List<Product> products = batch.getT2();
+
+			if (ordered && failed.get()) {
+				return Flux.range(0, products.size()).map(i -> new BulkItemResult(offset + i, products.get(i).getId(),
+						BulkItemResult.SKIPPED, null));
+			}
+			return metrics.timeRepository("bulkWrite", repository.bulkWrite(products, offset, ordered))
+					.doOnNext(result -> {
+						if (BulkItemResult.FAILED.equals(result.getStatus())) {
+							failed.set(true);
+						} else if (BulkItemResult.INSERTED.equals(result.getStatus())
+								|| BulkItemResult.REPLACED.equals(result.getStatus())) {
+							// A skipped product keeps its id, but it has not been written.
+							productCache.invalidate(result.getId());
+							publishBulkEvent(result, products.get((int) (result.getIndex() - offset)));
+						}
+					});
+		});
 	}
 
 	/**
 	 * This method, from a product data transfer object, creates a product entity
 	 * and saves it to the database by overwrite it on the specified product id.
 	 * 
-	 * @param productDto The product data transfer object.
-	 * @param id         The id of the product in the database to be overwritten.
+	 * The existence check and the write are a single findOneAndUpdate. When the
+	 * product has a version, it is only written if the stored product still has
+	 * that version, otherwise the update fails with a ProductConflictException;
+	 * only then is the product read, to tell a conflict from a missing product.
+	 * 
+	 * @param productDtoMono The product data transfer object.
+	 * @return The product data transfer object, or empty if no product has the id.
+	 */
+	public Mono<ProductDto> updateProduct(Mono<ProductDto> productDtoMono) {
+		return countParseFailures(productDtoMono, "update").map(AppUtils::dtoToEntity)
+				.flatMap(product -> metrics.timeRepository("replaceIfExists", repository.replaceIfExists(product))
+						.switchIfEmpty(Mono.defer(() -> conflictIfExists(product.getId(), product.getVersion()))))
+				.map(AppUtils::entityToDto).doOnNext(productCache::put).doOnNext(
+						updated -> events.publishLocal(new ProductEvent(ProductEvent.UPDATED, updated.getId(), updated)));
+	}
+
+	/**
+	 * This method, from the JSON string representation of a product, creates a
+	 * product entity and saves it to the database by overwrite it on the product
+	 * id.
+	 * 
+	 * @param productJsonString The product in the form of JSON string.
 	 * @return The product data transfer object.
 	 */
 	public Mono<ProductDto> updateProduct(String productJsonString) {
-		try {
-			// Map the JSON string representation of the product to the product data
-			// transfer object.
-			ProductDto productDto = new ObjectMapper().readValue(productJsonString, ProductDto.class);
-			String id = productDto.getId();
-			// Justify the product data transfer object as a single flux object.
-			Mono<ProductDto> productDtoMono = Mono.just(productDto);
-
-			if (repository.findById(id) == null) {
-				return null;
-			}
-			return repository.findById(id)
-					.flatMap(p -> productDtoMono.map(AppUtils::dtoToEntity).doOnNext(e -> e.setId(id)))
-					.flatMap(repository::save).map(AppUtils::entityToDto);
-		} catch (Exception ex) {
-			System.err.println("\nError: \n" + ex + "\n");
-			return null;
+		return updateProduct(readProduct(productJsonString));
+	}
+
+	/**
+	 * This method applies a JSON Merge Patch to the product with the given id:
+	 * the fields with a value are set, the fields with null are removed, and
+	 * the other fields are left as they are. Only the patched fields are
+	 * written, with a single findOneAndUpdate. A "version" in the patch makes
+	 * it conditional, as for updateProduct.
+	 * 
+	 * @param id         The product id.
+	 * @param mergePatch The merge patch of the product fields: productNum, name and price.
+	 * @return The patched product, or empty if no product has the id.
+	 */
+	public Mono<ProductDto> patchProduct(String id, Mono<Map<String, Object>> mergePatch) {
+		return countParseFailures(mergePatch, "patch").map(patch -> toPatch(id, patch))
+				.flatMap(patch -> metrics.timeRepository("patchIfExists", repository.patchIfExists(patch))
+						.switchIfEmpty(Mono.defer(() -> conflictIfExists(id, patch.getVersion()))))
+				.map(AppUtils::entityToDto).doOnNext(productCache::put).doOnNext(
+						patched -> events.publishLocal(new ProductEvent(ProductEvent.UPDATED, patched.getId(), patched)));
+	}
+
+	/**
+	 * This method applies a stream of JSON Merge Patches, each with the "id" of
+	 * its product, in batches of "products.bulk.batch-size", each batch with a
+	 * single bulkWrite. The patches of a stream are unconditional. The patched
+	 * products of a batch are read back, with one query, to publish them.
+	 * 
+	 * @param mergePatches The merge patches of the products.
+	 * @param ordered      True to stop at the first failed patch, false to attempt all of them.
+	 * @return The result of each patch, in the order of the request.
+	 */
+	public Flux<BulkItemResult> patchProducts(Flux<Map<String, Object>> mergePatches, boolean ordered) {
+		AtomicBoolean failed = new AtomicBoolean();
+
+		return mergePatches.map(patch -> {
+			Object id = patch.get("id");
+			if (!(id instanceof String)) {
+				throw new IllegalArgumentException("Each patch needs the id of its product");
+			}
+			if (patch.containsKey("version")) {
+				throw new IllegalArgumentException("The patches of a stream cannot have a version");
+			}
+			return toPatch((String) id, patch);
+		}).buffer(bulkBatchSize).index().concatMap(batch -> {
+			long offset = batch.getT1() * bulkBatchSize;
+			List<ProductPatch> patches = batch.getT2();
+
+			if (ordered && failed.get()) {
+				return Flux.range(0, patches.size()).map(i -> new BulkItemResult(offset + i, patches.get(i).getId(),
+						BulkItemResult.SKIPPED, null));
+			}
+			// The patched products are read again on their next read by id.
+			return metrics.timeRepository("bulkPatch", repository.bulkPatch(patches, offset, ordered))
+					.doOnNext(result -> {
+						if (BulkItemResult.FAILED.equals(result.getStatus())) {
+							failed.set(true);
+						} else {
+							productCache.invalidate(result.getId());
+						}
+					}).collectList().flatMapMany(results -> publishPatched(results).thenMany(Flux.fromIterable(results)));
+		});
+	}
+
+	/**
+	 * This method reads back the products patched by a batch, and publishes
+	 * them, unless the change stream publishes them.
+	 */
+	private Mono<Void> publishPatched(List<BulkItemResult> results) {
+		Set<String> ids = results.stream().filter(result -> BulkItemResult.PATCHED.equals(result.getStatus()))
+				.map(BulkItemResult::getId).collect(Collectors.toSet());
+		if (ids.isEmpty() || !events.publishesLocalChanges()) {
+			return Mono.empty();
+		}
+		return metrics.timeRepository("findAllById", repository.findAllById(ids)).map(AppUtils::entityToDto)
+				.doOnNext(patched -> events.publishLocal(new ProductEvent(ProductEvent.UPDATED, patched.getId(), patched)))
+				.then();
+	}
+
+	/**
+	 * This method starts repricing the products within a price range, in the
+	 * background. The ids of the range are split into chunks of about
+	 * "products.reprice.chunk-size" products, and each chunk is repriced by
+	 * MongoDB with a single updateMany, one chunk after the other, so the
+	 * products are never read and the progress is known chunk by chunk. As
+	 * the repriced products are not published one by one, a job which
+	 * modified products publishes a single "reloaded" event when it finishes,
+	 * whether it completed or failed.
+	 * 
+	 * @param request The repricing.
+	 * @return The started job, whose progress is read with getRepriceJob.
+	 */
+	public Mono<RepriceJob> startReprice(RepriceRequest request) {
+		return Mono.fromCallable(() -> {
+			if (request.getMin() > request.getMax()) {
+				throw new IllegalArgumentException("min must not be greater than max");
+			}
+			if (request.getFactor() <= 0) {
+				throw new IllegalArgumentException("factor must be positive");
+			}
+			if (request.getScale() < 0 || request.getScale() > 10) {
+				throw new IllegalArgumentException("scale must be between 0 and 10");
+			}
+			evictFinishedJobs();
+			RepriceJob job = new RepriceJob(UUID.randomUUID().toString(), request);
+			repriceJobs.put(job.getId(), job);
+			reprice(job).subscribe();
+			return job;
+		});
+	}
+
+	/**
+	 * This method finds a repricing job of this instance. A finished job is
+	 * found for "products.reprice.job-retention" after it finished.
+	 * 
+	 * @param id The job id.
+	 * @return The job, with its progress, or empty if it does not exist.
+	 */
+	public Mono<RepriceJob> getRepriceJob(String id) {
+		return Mono.fromSupplier(() -> {
+			evictFinishedJobs();
+			return repriceJobs.get(id);
+		});
+	}
+
+	/**
+	 * This method removes the jobs finished more than
+	 * "products.reprice.job-retention" ago, so the jobs do not pile up.
+	 */
+	private void evictFinishedJobs() {
+		Instant evictBefore = Instant.now().minus(repriceJobRetention);
+		repriceJobs.values().removeIf(job -> job.getFinishedAt() != null && !job.getFinishedAt().isAfter(evictBefore));
+	}
+
+	/**
+	 * This method reprices the chunks of a job, and records its progress.
+	 */
+	private Mono<Void> reprice(RepriceJob job) {
+		RepriceRequest request = job.getRequest();
+
+		return metrics
+				.timeRepository("countInPriceRange", repository.countInPriceRange(request.getMin(), request.getMax()))
+				.flatMap(total -> {
+					job.setTotal(total);
+					int chunks = (int) Math.min(Integer.MAX_VALUE, (total + repriceChunkSize - 1) / repriceChunkSize);
+					return total == 0 ? Mono.just(List.<Document>of())
+							: metrics.timeRepository("idBucketsInPriceRange",
+									repository.idBucketsInPriceRange(request.getMin(), request.getMax(), chunks))
+									.collectList();
+				})
+				.flatMapMany(buckets -> {
+					// $bucketAuto may make fewer buckets than asked.
+					job.setChunks(buckets.size());
+					return Flux.fromIterable(buckets).index();
+				})
+				.concatMap(bucket -> {
+					Document bounds = bucket.getT2().get("_id", Document.class);
+					boolean last = bucket.getT1() == job.getChunks() - 1;
+					return metrics.timeRepository("repriceIdRange",
+							repository.repriceIdRange(request, bounds.get("min"), bounds.get("max"), last));
+				})
+				.doOnNext(result -> {
+					job.setMatched(job.getMatched() + result.getMatchedCount());
+					job.setModified(job.getModified() + result.getModifiedCount());
+					job.setChunksDone(job.getChunksDone() + 1);
+				})
+				.then(Mono.<Void>fromRunnable(() -> finish(job, RepriceJob.COMPLETED, null)))
+				.onErrorResume(ex -> Mono.fromRunnable(() -> finish(job, RepriceJob.FAILED, ex.getMessage())));
+	}
+
+	private void finish(RepriceJob job, String status, String error) {
+		if (job.getModified() > 0) {
+			// The repriced products are read again on their next read by id, and by what follows the events.
+			productCache.invalidateAll();
+			events.publishLocal(new ProductEvent(ProductEvent.RELOADED, null, null));
+		}
+		// The status is set last, a job read as finished has all of its fields.
+		job.setError(error);
+		job.setFinishedAt(Instant.now());
+		job.setStatus(status);
+	}
+
+	/**
+	 * This method converts a JSON Merge Patch of a ProductDto to the fields to
+	 * set and remove.
+	 * 
+	 * @param id         The product id.
+	 * @param mergePatch The merge patch.
+	 * @return The product patch.
+	 */
+	private static ProductPatch toPatch(String id, Map<String, Object> mergePatch) {
+		Map<String, Object> set = new LinkedHashMap<>();
+		Set<String> unset = new LinkedHashSet<>();
+		Long version = null;
+
+		for (Map.Entry<String, Object> field : mergePatch.entrySet()) {
+			Object value = field.getValue();
+			switch (field.getKey()) {
+			case "id":
+				if (value != null && !value.equals(id)) {
+					throw new IllegalArgumentException("The id of a product cannot be patched");
+				}
+				break;
+			case "version":
+				if (!(value instanceof Number)) {
+					throw new IllegalArgumentException("version must be a number");
+				}
+				version = ((Number) value).longValue();
+				break;
+			case "price":
+				// The price is a primitive, it cannot be removed.
+				if (!(value instanceof Number)) {
+					throw new IllegalArgumentException("price must be a number");
+				}
+				set.put("price", ((Number) value).doubleValue());
+				break;
+			case "productNum":
+			case "name":
+				if (value == null) {
+					unset.add(field.getKey());
+				} else if (value instanceof String) {
+					set.put(field.getKey(), value);
+				} else {
+					throw new IllegalArgumentException(field.getKey() + " must be a string");
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown product field: " + field.getKey());
+			}
+		}
+		if (set.isEmpty() && unset.isEmpty()) {
+			throw new IllegalArgumentException("At least one product field must be patched");
+		}
+		return new ProductPatch(id, set, unset, version);
+	}
+
+	/**
+	 * This method removes a product with the id of the given product from the
+	 * database.
+	 * 
+	 * @param productDtoMono The product data transfer object.
+	 * @return True if the product has been removed, false if it did not exist.
+	 */
+	public Mono<Boolean> deleteProduct(Mono<ProductDto> productDtoMono) {
+		return countParseFailures(productDtoMono, "delete").map(ProductDto::getId)
+				.flatMap(id -> metrics.timeRepository("removeById", repository.removeById(id))
+						.doOnNext(deleted -> productCache.invalidate(id)).doOnNext(deleted -> {
+							if (deleted) {
+								events.publishLocal(new ProductEvent(ProductEvent.DELETED, id, null));
+							}
+						}));
+	}
+
+	/**
+	 * This method removes a product, given as a JSON string, from the database.
+	 * 
+	 * @param productJsonString The product in the form of JSON string.
+	 * @return True if the product has been removed, false if it did not exist.
+	 */
+	public Mono<Boolean> deleteProduct(String productJsonString) {
+		return deleteProduct(readProduct(productJsonString));
+	}
+
+	/**
+	 * This method fails with a ProductConflictException if a product, which
+	 * did not match the given version, exists.
+	 * 
+	 * @param id      The product id.
+	 * @param version The expected version, or null for an unconditional write.
+	 * @return A ProductConflictException, or empty if the product does not exist.
+	 */
+	private <T> Mono<T> conflictIfExists(String id, Long version) {
+		if (version == null) {
+			return Mono.empty();
 		}
+		return metrics.timeRepository("existsById", repository.existsById(id))
+				.flatMap(exists -> exists ? Mono.error(new ProductConflictException(id, version)) : Mono.empty());
+	}
+
+	/**
+	 * This method publishes the change of a product written by a bulk write.
+	 * The version written is not sent back by the bulk write, so the product
+	 * is published without one.
+	 */
+	private void publishBulkEvent(BulkItemResult result, Product product) {
+		ProductDto productDto = AppUtils.entityToDto(product);
+		productDto.setId(result.getId());
+		productDto.setVersion(null);
+
+		events.publishLocal(new ProductEvent(
+				BulkItemResult.INSERTED.equals(result.getStatus()) ? ProductEvent.CREATED : ProductEvent.UPDATED,
+				result.getId(), productDto));
 	}
 
 	/**
-	 * This method removes a product with a specified id from the database.
+	 * This method maps the JSON string representation of the product to the
+	 * product data transfer object, using the shared reader.
 	 * 
-	 * @param id The id of the product.
-	 * @return Nothing.
+	 * @param productJsonString The product in the form of JSON string.
+	 * @return The product data transfer object, or an error if the JSON is invalid.
 	 */
-	public Mono<Void> deleteProduct(String productJsonString) {
-		
-		try {
-			// Map the JSON string representation of the product to the product data
-			// transfer object.
-			ProductDto productDto = new ObjectMapper().readValue(productJsonString, ProductDto.class);
-			String id = productDto.getId();
+	private Mono<ProductDto> readProduct(String productJsonString) {
+		return Mono.fromCallable(() -> productDtoReader.<ProductDto>readValue(productJsonString));
+	}
+
+	/**
+	 * This method counts the product bodies which could not be parsed, by the
+	 * shared reader or by the WebFlux codec.
+	 * 
+	 * @param body      The product body.
+	 * @param operation The operation of the body: save, update, patch or delete.
+	 * @return The product body.
+	 */
+	private <T> Mono<T> countParseFailures(Mono<T> body, String operation) {
+		return body.doOnError(ProductService::isParseFailure, ex -> metrics.parseFailure(operation));
+	}
 
-			if (repository.findById(id) == null) {
-				return null;
+	private static boolean isParseFailure(Throwable ex) {
+		// The codec reports a DecodingException, wrapped in a ServerWebInputException.
+		for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+			if (cause instanceof JsonProcessingException || cause instanceof DecodingException) {
+				return true;
 			}
-			return repository.deleteById(id);
-		} catch (Exception ex) {
-			System.err.println("\nError: \n" + ex + "\n");
-			return null;
 		}
+		return false;
 	}
 }
@@ -1,5 +1,11 @@
 package com.springbootcrudexample1.utils;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
 import com.springbootcrudexample1.model.Product;
 import com.springbootcrudexample1.model.ProductDto;
 
@@ -26,6 +32,7 @@ public class AppUtils {
 		productDto.setProductNum(product.getProductNum());
 		productDto.setName(product.getName());
 		productDto.setPrice(product.getPrice());
+		productDto.setVersion(product.getVersion());
 //        Note: 
 //		  BeanUtils.copyProperties() does not really work.
 //        Eg: BeanUtils.copyProperties(product, productDto);
@@ -46,7 +53,79 @@ public class AppUtils {
 		product.setProductNum(productDto.getProductNum());
 		product.setName(productDto.getName());
 		product.setPrice(productDto.getPrice());
+		product.setVersion(productDto.getVersion());
 
 		return product;
 	}
+
+	/**
+	 * This method converts a product document, as read from MongoDB, to
+	 * ProductDto(Product Data Transfer Object) without an intermediate Product.
+	 * 
+	 * @param document The product document.
+	 * @return ProductDto - The Product Data Transfer Object.
+	 */
+	public static ProductDto documentToDto(Document document) {
+		ProductDto productDto = new ProductDto();
+		Object id = document.get("_id");
+		Object price = document.get("price");
+		Object version = document.get("version");
+
+		productDto.setId(id == null ? null : id.toString());
+		productDto.setProductNum((String) document.get("productNum"));
+		productDto.setName((String) document.get("name"));
+		productDto.setPrice(price == null ? 0.0 : ((Number) price).doubleValue());
+		productDto.setVersion(version == null ? null : ((Number) version).longValue());
+
+		return productDto;
+	}
+
+	/**
+	 * This method converts ProductDto(Product Data Transfer Object) to a product
+	 * document, as written by the Product mapping. An id which is a valid
+	 * ObjectId is stored as an ObjectId, and null fields are left out.
+	 * 
+	 * @param productDto The Product Data Transfer Object.
+	 * @return Document - The product document.
+	 */
+	public static Document dtoToDocument(ProductDto productDto) {
+		Document document = new Document();
+		String id = productDto.getId();
+
+		if (id != null) {
+			document.put("_id", ObjectId.isValid(id) ? new ObjectId(id) : id);
+		}
+		if (productDto.getProductNum() != null) {
+			document.put("productNum", productDto.getProductNum());
+		}
+		if (productDto.getName() != null) {
+			document.put("name", productDto.getName());
+		}
+		document.put("price", productDto.getPrice());
+		if (productDto.getVersion() != null) {
+			document.put("version", productDto.getVersion());
+		}
+
+		return document;
+	}
+
+	/**
+	 * This method converts a projected product document to its fields, keyed by
+	 * the ProductDto property names. The _id is renamed to id, as its hex string.
+	 * 
+	 * @param document The product document, with only the projected fields.
+	 * @return The fields of the product, in the order of the document.
+	 */
+	public static Map<String, Object> documentToFields(Document document) {
+		Map<String, Object> fields = new LinkedHashMap<>(document.size() * 2);
+
+		for (Map.Entry<String, Object> field : document.entrySet()) {
+			if ("_id".equals(field.getKey())) {
+				fields.put("id", field.getValue() == null ? null : field.getValue().toString());
+			} else {
+				fields.put(field.getKey(), field.getValue());
+			}
+		}
+		return fields;
+	}
 }
@@ -0,0 +1,188 @@
+package com.springbootcrudexample1.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import com.springbootcrudexample1.model.ProductDto;
+
+/**
+ * <h2>Class to encode and decode the opaque cursors of the product pages.</h2>
+ * A cursor holds the sort key of the last product of a page: the id for the
+ * product listing, the price and id for the price range, the product number
+ * for the product number search and the text score and id for the name
+ * search. The price and score are kept as their exact bits, so no product is
+ * skipped or repeated due to rounding.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-29
+ *
+ */
+public class ProductCursor {
+	private final Double price;
+	private final Double score;
+	private final String productNum;
+	private final String id;
+
+	private ProductCursor(Double price, Double score, String productNum, String id) {
+		this.price = price;
+		this.score = score;
+		this.productNum = productNum;
+		this.id = id;
+	}
+
+	/**
+	 * This method gets the price of the last product of the page.
+	 * 
+	 * @return The price, or null for an id cursor.
+	 */
+	public Double getPrice() {
+		return price;
+	}
+
+	/**
+	 * This method gets the text score of the last product of the page.
+	 * 
+	 * @return The score, or null unless it is a score cursor.
+	 */
+	public Double getScore() {
+		return score;
+	}
+
+	/**
+	 * This method gets the product number of the last product of the page.
+	 * 
+	 * @return The product number, or null unless it is a product number cursor.
+	 */
+	public String getProductNum() {
+		return productNum;
+	}
+
+	/**
+	 * This method gets the id of the last product of the page.
+	 * 
+	 * @return The product id, or null for a product number cursor.
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * This method encodes the id cursor after the given product.
+	 * 
+	 * @param productDto The last product of the page.
+	 * @return The opaque cursor.
+	 */
+	public static String encodeId(ProductDto productDto) {
+		return encode("i:" + productDto.getId());
+	}
+
+	/**
+	 * This method encodes the price and id cursor after the given product.
+	 * 
+	 * @param productDto The last product of the page.
+	 * @return The opaque cursor.
+	 */
+	public static String encodePriceId(ProductDto productDto) {
+		return encode("p:" + Long.toHexString(Double.doubleToRawLongBits(productDto.getPrice())) + ":"
+				+ productDto.getId());
+	}
+
+	/**
+	 * This method encodes the product number cursor after the given product.
+	 * 
+	 * @param productDto The last product of the page.
+	 * @return The opaque cursor.
+	 * @throws IllegalArgumentException If the product has no product number.
+	 */
+	public static String encodeProductNum(ProductDto productDto) {
+		if (productDto.getProductNum() == null) {
+			throw new IllegalArgumentException("The product " + productDto.getId() + " has no productNum");
+		}
+		return encode("n:" + productDto.getProductNum());
+	}
+
+	/**
+	 * This method encodes the text score and id cursor after a product.
+	 * 
+	 * @param score The text score of the last product of the page.
+	 * @param id    The id of the last product of the page.
+	 * @return The opaque cursor.
+	 */
+	public static String encodeScoreId(double score, String id) {
+		return encode("s:" + Long.toHexString(Double.doubleToRawLongBits(score)) + ":" + id);
+	}
+
+	/**
+	 * This method decodes an id cursor.
+	 * 
+	 * @param cursor The opaque cursor.
+	 * @return The decoded cursor.
+	 * @throws IllegalArgumentException If the cursor is not a valid id cursor.
+	 */
+	public static ProductCursor decodeId(String cursor) {
+		String value = decode(cursor);
+		if (!value.startsWith("i:") || value.length() == 2) {
+			throw new IllegalArgumentException("Invalid cursor: " + cursor);
+		}
+		return new ProductCursor(null, null, null, value.substring(2));
+	}
+
+	/**
+	 * This method decodes a price and id cursor.
+	 * 
+	 * @param cursor The opaque cursor.
+	 * @return The decoded cursor.
+	 * @throws IllegalArgumentException If the cursor is not a valid price and id cursor.
+	 */
+	public static ProductCursor decodePriceId(String cursor) {
+		ProductCursor decoded = decodeNumberId(cursor, "p:");
+		return new ProductCursor(decoded.price, null, null, decoded.id);
+	}
+
+	/**
+	 * This method decodes a product number cursor.
+	 * 
+	 * @param cursor The opaque cursor.
+	 * @return The decoded cursor.
+	 * @throws IllegalArgumentException If the cursor is not a valid product number cursor.
+	 */
+	public static ProductCursor decodeProductNum(String cursor) {
+		String value = decode(cursor);
+		if (!value.startsWith("n:") || value.length() == 2) {
+			throw new IllegalArgumentException("Invalid cursor: " + cursor);
+		}
+		return new ProductCursor(null, null, value.substring(2), null);
+	}
+
+	/**
+	 * This method decodes a text score and id cursor.
+	 * 
+	 * @param cursor The opaque cursor.
+	 * @return The decoded cursor.
+	 * @throws IllegalArgumentException If the cursor is not a valid score and id cursor.
+	 */
+	public static ProductCursor decodeScoreId(String cursor) {
+		ProductCursor decoded = decodeNumberId(cursor, "s:");
+		return new ProductCursor(null, decoded.price, null, decoded.id);
+	}
+
+	private static ProductCursor decodeNumberId(String cursor, String prefix) {
+		String value = decode(cursor);
+		int separator = value.indexOf(':', 2);
+		if (!value.startsWith(prefix) || separator < 0 || separator == value.length() - 1) {
+			throw new IllegalArgumentException("Invalid cursor: " + cursor);
+		}
+		double number = Double.longBitsToDouble(Long.parseUnsignedLong(value.substring(2, separator), 16));
+		return new ProductCursor(number, null, null, value.substring(separator + 1));
+	}
+
+	private static String encode(String value) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String decode(String cursor) {
+		// Base64 and number format errors are IllegalArgumentExceptions as well.
+		return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+	}
+}
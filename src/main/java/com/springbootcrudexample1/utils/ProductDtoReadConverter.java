@@ -0,0 +1,31 @@
+package com.springbootcrudexample1.utils;
+
+import org.bson.Document;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+
+import com.springbootcrudexample1.model.ProductDto;
+
+/**
+ * <h2>Class to read a product document straight into ProductDto.</h2>
+ * This Mongo converter lets the repository read ProductDto without mapping the
+ * document to a Product first, and without reflection.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-28
+ *
+ */
+@ReadingConverter
+public class ProductDtoReadConverter implements Converter<Document, ProductDto> {
+	/**
+	 * This method converts the product document to ProductDto.
+	 * 
+	 * @param source The product document.
+	 * @return ProductDto - The Product Data Transfer Object.
+	 */
+	@Override
+	public ProductDto convert(Document source) {
+		return AppUtils.documentToDto(source);
+	}
+}
@@ -0,0 +1,31 @@
+package com.springbootcrudexample1.utils;
+
+import org.bson.Document;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.WritingConverter;
+
+import com.springbootcrudexample1.model.ProductDto;
+
+/**
+ * <h2>Class to write ProductDto straight into a product document.</h2>
+ * This Mongo converter lets the repository write ProductDto without mapping it
+ * to a Product first, and without reflection.
+ * 
+ * @author seanea
+ * @version 1.0
+ * @since 2022-06-28
+ *
+ */
+@WritingConverter
+public class ProductDtoWriteConverter implements Converter<ProductDto, Document> {
+	/**
+	 * This method converts ProductDto to the product document.
+	 * 
+	 * @param source The Product Data Transfer Object.
+	 * @return Document - The product document.
+	 */
+	@Override
+	public Document convert(ProductDto source) {
+		return AppUtils.dtoToDocument(source);
+	}
+}
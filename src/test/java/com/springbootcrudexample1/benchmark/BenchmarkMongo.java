@@ -0,0 +1,87 @@
+package com.springbootcrudexample1.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.springbootcrudexample1.config.MongoConfig;
+import com.springbootcrudexample1.model.Product;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * This class, BenchmarkMongo, builds the Mongo mapping of the application, with
+ * its custom conversions, for the benchmarks which run without Spring, and
+ * seeds the benchmark databases.
+ * 
+ * @author seanea
+ *
+ */
+final class BenchmarkMongo {
+	private BenchmarkMongo() {
+	}
+
+	/**
+	 * This method builds the converter configured as in the application.
+	 * 
+	 * @return The Mongo converter.
+	 */
+	static MappingMongoConverter converter() {
+		MongoCustomConversions conversions = new MongoConfig().mongoCustomConversions();
+		MongoMappingContext mappingContext = new MongoMappingContext();
+		mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+		mappingContext.afterPropertiesSet();
+
+		MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+		converter.setCustomConversions(conversions);
+		converter.afterPropertiesSet();
+		return converter;
+	}
+
+	/**
+	 * This method builds the template configured as in the application.
+	 * 
+	 * @param client   The Mongo client.
+	 * @param database The database name.
+	 * @return The reactive Mongo template.
+	 */
+	static ReactiveMongoTemplate template(MongoClient client, String database) {
+		return new ReactiveMongoTemplate(new SimpleReactiveMongoDatabaseFactory(client, database), converter());
+	}
+
+	/**
+	 * This method inserts the missing products, up to the given number, and
+	 * the (price, _id) index the price range queries rely on. The prices are
+	 * random between 0 and 1000, with the same seed on every run.
+	 * 
+	 * @param template  The reactive Mongo template.
+	 * @param documents The number of products.
+	 */
+	static void seed(ReactiveMongoTemplate template, long documents) {
+		String collection = template.getCollectionName(Product.class);
+		long existing = template.getCollection(collection).flatMap(c -> Mono.from(c.countDocuments())).block();
+		Random random = new Random(42);
+
+		for (long i = existing; i < documents; i += 10_000) {
+			List<Document> batch = new ArrayList<>(10_000);
+			for (long j = i; j < Math.min(documents, i + 10_000); j++) {
+				batch.add(new Document("_id", new ObjectId()).append("productNum", "PRD-" + j)
+						.append("name", "Product " + j).append("price", Math.round(random.nextDouble() * 100000) / 100.0));
+			}
+			template.getCollection(collection).flatMap(c -> Mono.from(c.insertMany(batch))).block();
+		}
+		template.getCollection(collection)
+				.flatMapMany(c -> Flux.from(c.createIndex(new Document("price", 1).append("_id", 1)))).blockLast();
+	}
+}
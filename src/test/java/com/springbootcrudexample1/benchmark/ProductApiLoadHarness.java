@@ -0,0 +1,220 @@
+package com.springbootcrudexample1.benchmark;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.springbootcrudexample1.SpringBootcrudExample1Application;
+import com.springbootcrudexample1.model.Product;
+import com.springbootcrudexample1.model.ProductDto;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * This class, ProductApiLoadHarness, boots the application on a random port,
+ * seeds the "benchmark" database, then drives each ProductController
+ * end-point in turn with a fixed number of concurrent clients, and reports
+ * the requests per second and the latency percentiles of each end-point.
+ *
+ * Each client sends its next request when the previous one completes (a
+ * closed loop), so the latencies are those at the throughput reached, not at
+ * a fixed arrival rate. The end-points which stream the whole collection are
+ * not driven, their cost grows with the seeded products.
+ *
+ * It needs a local MongoDB, by default mongodb://localhost:27018 as in
+ * application.properties:
+ * -Dbenchmark.mongo.uri=... -Dbenchmark.documents=... (100000)
+ * -Dbenchmark.concurrency=... (64) -Dbenchmark.warmup=... (PT10S)
+ * -Dbenchmark.duration=... (PT30S)
+ * The first argument, if any, is a regular expression of the end-points to
+ * drive, e.g. "getById|multiGet".
+ *
+ * @author seanea
+ *
+ */
+public class ProductApiLoadHarness {
+	private static final String DATABASE = "benchmark";
+
+	private final WebClient client;
+	private final int concurrency;
+	private final List<String> ids;
+	private final Queue<String> savedIds = new ConcurrentLinkedQueue<>();
+
+	private ProductApiLoadHarness(WebClient client, int concurrency, List<String> ids) {
+		this.client = client;
+		this.concurrency = concurrency;
+		this.ids = ids;
+	}
+
+	public static void main(String[] args) {
+		String uri = System.getProperty("benchmark.mongo.uri", "mongodb://localhost:27018");
+		long documents = Long.getLong("benchmark.documents", 100_000L);
+		int concurrency = Integer.getInteger("benchmark.concurrency", 64);
+		Duration warmup = Duration.parse(System.getProperty("benchmark.warmup", "PT10S"));
+		Duration duration = Duration.parse(System.getProperty("benchmark.duration", "PT30S"));
+		Pattern include = Pattern.compile(args.length > 0 && !args[0].isBlank() ? args[0] : ".*");
+
+		ConfigurableApplicationContext context = SpringApplication.run(SpringBootcrudExample1Application.class,
+				"--server.port=0", "--spring.data.mongodb.uri=" + uri + "/" + DATABASE,
+				"--products.indexes.mode=create", "--logging.level.root=WARN");
+		try {
+			ReactiveMongoTemplate template = context.getBean(ReactiveMongoTemplate.class);
+			BenchmarkMongo.seed(template, documents);
+			List<String> ids = template.find(new Query().limit(10_000), Product.class).map(Product::getId)
+					.collectList().block();
+
+			int port = ((ReactiveWebServerApplicationContext) context).getWebServer().getPort();
+			WebClient client = WebClient.builder().baseUrl("http://localhost:" + port)
+					.codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(16 * 1024 * 1024)).build();
+			ProductApiLoadHarness harness = new ProductApiLoadHarness(client, concurrency, ids);
+
+			System.out.printf("%d products, %d concurrent clients, %s per end-point%n%n", documents, concurrency,
+					duration);
+			System.out.printf("%-12s %10s %8s %10s %9s %9s %9s %9s %9s%n", "end-point", "requests", "errors",
+					"req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+			for (Scenario scenario : harness.scenarios()) {
+				if (include.matcher(scenario.name).matches()) {
+					harness.drive(scenario, warmup);
+					harness.report(scenario.name, harness.drive(scenario, duration), duration);
+				}
+			}
+		} finally {
+			context.close();
+		}
+	}
+
+	/**
+	 * This method lists the end-points, as the requests of one client. The
+	 * deletions remove the products saved before, so "save" runs first.
+	 */
+	private List<Scenario> scenarios() {
+		List<Scenario> scenarios = new ArrayList<>();
+		scenarios.add(new Scenario("getById", () -> get("/products/" + randomId())));
+		scenarios.add(new Scenario("multiGet", () -> get("/products?ids=" + randomIds(20))));
+		scenarios.add(new Scenario("page", () -> get("/products?limit=100")));
+		scenarios.add(new Scenario("rangePage", () -> {
+			double min = ThreadLocalRandom.current().nextInt(990);
+			return get("/products/product_range?min=" + min + "&max=" + (min + 10) + "&limit=100");
+		}));
+		scenarios.add(new Scenario("rangeFields", () -> {
+			double min = ThreadLocalRandom.current().nextInt(999);
+			return get("/products/product_range?min=" + min + "&max=" + (min + 1) + "&fields=id,price");
+		}));
+		scenarios.add(new Scenario("save", () -> post("/products", newProduct(null), ProductDto.class)
+				.doOnNext(saved -> savedIds.add(saved.getId()))));
+		scenarios.add(new Scenario("update", () -> post("/products/update", newProduct(randomId()), ProductDto.class)));
+		scenarios.add(new Scenario("bulk", () -> {
+			List<ProductDto> products = new ArrayList<>(100);
+			for (int i = 0; i < 100; i++) {
+				products.add(newProduct(null));
+			}
+			return post("/products/bulk", products, String.class);
+		}));
+		scenarios.add(new Scenario("delete", () -> {
+			String id = savedIds.poll();
+			// Once the saved products are all deleted, the requests are counted as errors.
+			return id == null ? Mono.error(new IllegalStateException("No saved product left"))
+					: post("/products/delete", new ProductDto(id, null, null, 0), String.class);
+		}));
+		return scenarios;
+	}
+
+	/**
+	 * This method drives an end-point with the concurrent clients for the
+	 * given duration, and records the latency of each request.
+	 */
+	private Result drive(Scenario scenario, Duration duration) {
+		Histogram histogram = new ConcurrentHistogram(Duration.ofMinutes(1).toNanos(), 3);
+		AtomicLong errors = new AtomicLong();
+		long deadline = System.nanoTime() + duration.toNanos();
+
+		Flux.range(0, concurrency).flatMap(client -> Mono.defer(() -> {
+			long start = System.nanoTime();
+			return scenario.request.get().then()
+					.doOnSuccess(done -> histogram.recordValue(Math.min(System.nanoTime() - start,
+							histogram.getHighestTrackableValue())))
+					.onErrorResume(ex -> {
+						errors.incrementAndGet();
+						return Mono.empty();
+					});
+		}).repeat(() -> System.nanoTime() < deadline), concurrency).blockLast();
+
+		return new Result(histogram, errors.get());
+	}
+
+	private void report(String name, Result result, Duration duration) {
+		Histogram histogram = result.histogram;
+		System.out.printf("%-12s %10d %8d %10.0f %9.2f %9.2f %9.2f %9.2f %9.2f%n", name,
+				histogram.getTotalCount(), result.errors, histogram.getTotalCount() / (duration.toMillis() / 1000.0),
+				millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+				millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+				millis(histogram.getMaxValue()));
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1_000_000.0;
+	}
+
+	private Mono<String> get(String path) {
+		return client.get().uri(path).accept(MediaType.APPLICATION_JSON).retrieve().bodyToMono(String.class);
+	}
+
+	private <T> Mono<T> post(String path, Object body, Class<T> responseType) {
+		return client.post().uri(path).contentType(MediaType.APPLICATION_JSON).bodyValue(body).retrieve()
+				.bodyToMono(responseType);
+	}
+
+	private String randomId() {
+		return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+	}
+
+	private String randomIds(int count) {
+		return ThreadLocalRandom.current().ints(count, 0, ids.size()).mapToObj(ids::get)
+				.collect(Collectors.joining(","));
+	}
+
+	private static ProductDto newProduct(String id) {
+		int number = ThreadLocalRandom.current().nextInt(1_000_000_000);
+		// Without productNum, the products never collide on its unique index.
+		return new ProductDto(id, null, "Load product " + number,
+				Math.round(ThreadLocalRandom.current().nextDouble() * 100000) / 100.0);
+	}
+
+	private static class Scenario {
+		private final String name;
+		private final Supplier<Mono<?>> request;
+
+		private Scenario(String name, Supplier<Mono<?>> request) {
+			this.name = name;
+			this.request = request;
+		}
+	}
+
+	private static class Result {
+		private final Histogram histogram;
+		private final long errors;
+
+		private Result(Histogram histogram, long errors) {
+			this.histogram = histogram;
+			this.errors = errors;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.springbootcrudexample1.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+
+import com.springbootcrudexample1.model.Product;
+import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.utils.AppUtils;
+
+/**
+ * This class, ProductConversionBenchmark, measures the documents per
+ * millisecond of each way a product document becomes a ProductDto, and of
+ * each way a ProductDto becomes a document:
+ * the Spring Data mapping to Product followed by AppUtils.entityToDto (the old
+ * read path), the MappingMongoConverter with the custom ProductDto converters
+ * (the new read path), and the AppUtils conversions on their own.
+ *
+ * Run it with "-prof gc"; gc.alloc.rate.norm is the bytes allocated per document.
+ *
+ * @author seanea
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductConversionBenchmark {
+	private MappingMongoConverter converter;
+	private Document document;
+	private ProductDto productDto;
+
+	@Setup
+	public void setUp() {
+		converter = BenchmarkMongo.converter();
+		document = new Document("_id", new ObjectId()).append("productNum", "PRD-000123456")
+				.append("name", "Stainless steel water bottle, 750 ml").append("price", 24.99)
+				.append("_class", Product.class.getName());
+		productDto = AppUtils.documentToDto(document);
+	}
+
+	@Benchmark
+	public ProductDto readThroughProductEntity() {
+		return AppUtils.entityToDto(converter.read(Product.class, document));
+	}
+
+	@Benchmark
+	public ProductDto readWithCustomConverter() {
+		return converter.read(ProductDto.class, document);
+	}
+
+	@Benchmark
+	public ProductDto readDocumentToDto() {
+		return AppUtils.documentToDto(document);
+	}
+
+	@Benchmark
+	public Document writeThroughProductEntity() {
+		Document target = new Document();
+		converter.write(AppUtils.dtoToEntity(productDto), target);
+		return target;
+	}
+
+	@Benchmark
+	public Object writeWithCustomConverter() {
+		return converter.convertToMongoType(productDto);
+	}
+
+	@Benchmark
+	public Document writeDtoToDocument() {
+		return AppUtils.dtoToDocument(productDto);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ProductConversionBenchmark.class.getSimpleName()).build()).run();
+	}
+}
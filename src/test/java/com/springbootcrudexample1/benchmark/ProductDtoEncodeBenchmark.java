@@ -0,0 +1,84 @@
+package com.springbootcrudexample1.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.utils.ProductDtoJsonEncoder;
+
+import io.netty.buffer.PooledByteBufAllocator;
+
+/**
+ * This class, ProductDtoEncodeBenchmark, compares the encoding of a ProductDto
+ * response to a pooled Netty buffer: the WebFlux Jackson encoder against the
+ * ProductDtoJsonEncoder, which writes the fields directly.
+ *
+ * Run it with the main method, or with "-prof gc" to also see allocations.
+ *
+ * @author seanea
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductDtoEncodeBenchmark {
+	private static final ResolvableType PRODUCT_DTO_TYPE = ResolvableType.forClass(ProductDto.class);
+
+	private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+	private final ProductDto productDto = new ProductDto("62bc4f3a9d1e8a2f5c7b1a23", "PRD-000123456",
+			"Stainless steel water bottle, 750 ml", 24.99, 3L);
+	private Jackson2JsonEncoder jacksonEncoder;
+	private ProductDtoJsonEncoder productDtoEncoder;
+
+	@Setup
+	public void setUp() {
+		jacksonEncoder = new Jackson2JsonEncoder(new ObjectMapper());
+		productDtoEncoder = new ProductDtoJsonEncoder();
+	}
+
+	@Benchmark
+	public int jacksonEncoder() {
+		return release(jacksonEncoder.encodeValue(productDto, bufferFactory, PRODUCT_DTO_TYPE,
+				MediaType.APPLICATION_JSON, Map.of()));
+	}
+
+	@Benchmark
+	public int productDtoEncoder() {
+		return release(productDtoEncoder.encodeValue(productDto, bufferFactory, PRODUCT_DTO_TYPE,
+				MediaType.APPLICATION_JSON, Map.of()));
+	}
+
+	private static int release(DataBuffer buffer) {
+		int size = buffer.readableByteCount();
+		DataBufferUtils.release(buffer);
+		return size;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ProductDtoEncodeBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,100 @@
+package com.springbootcrudexample1.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.springbootcrudexample1.model.ProductDto;
+
+/**
+ * This class, ProductDtoParseBenchmark, compares the ways a ProductDto request
+ * body is parsed: a new ObjectMapper per request (the old path), the shared
+ * ObjectReader on a String, and the WebFlux Jackson codec straight from a
+ * DataBuffer (the path used by the typed request bodies).
+ *
+ * Run it with the main method, or with "-prof gc" to also see allocations.
+ *
+ * @author seanea
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductDtoParseBenchmark {
+	private static final ResolvableType PRODUCT_DTO_TYPE = ResolvableType.forClass(ProductDto.class);
+
+	@Param({ "short", "long" })
+	private String payload;
+
+	private String json;
+	private byte[] jsonBytes;
+	private ObjectReader productDtoReader;
+	private Jackson2JsonDecoder decoder;
+	private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+	@Setup
+	public void setUp() {
+		String name = "short".equals(payload) ? "Water bottle"
+				: "Stainless steel water bottle, 750 ml, double wall vacuum insulated, leak proof lid, "
+						+ "keeps drinks cold for 24 hours and hot for 12 hours, BPA free, dishwasher safe";
+		json = "{\"id\":\"62bc4f3a9d1e8a2f5c7b1a23\",\"productNum\":\"PRD-000123456\",\"name\":\"" + name
+				+ "\",\"price\":24.99}";
+		jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+
+		ObjectMapper objectMapper = new ObjectMapper();
+		productDtoReader = objectMapper.readerFor(ProductDto.class);
+		decoder = new Jackson2JsonDecoder(objectMapper);
+	}
+
+	/**
+	 * The old path: a new ObjectMapper, and new caches, for every request.
+	 */
+	@Benchmark
+	public ProductDto newObjectMapperPerRequest() throws Exception {
+		return new ObjectMapper().readValue(json, ProductDto.class);
+	}
+
+	/**
+	 * The shared, pre-built ObjectReader on the String body.
+	 */
+	@Benchmark
+	public ProductDto sharedReaderFromString() throws Exception {
+		return productDtoReader.readValue(json);
+	}
+
+	/**
+	 * The WebFlux codec path, decoding straight from the request DataBuffer.
+	 */
+	@Benchmark
+	public ProductDto codecFromDataBuffer() {
+		return (ProductDto) decoder.decode(bufferFactory.wrap(jsonBytes), PRODUCT_DTO_TYPE,
+				MediaType.APPLICATION_JSON, null);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ProductDtoParseBenchmark.class.getSimpleName()).build()).run();
+	}
+}
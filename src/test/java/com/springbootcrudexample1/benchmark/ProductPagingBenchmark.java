@@ -0,0 +1,119 @@
+package com.springbootcrudexample1.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.springbootcrudexample1.model.Product;
+import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.repository.IProductRepositoryCustomImpl;
+
+/**
+ * This class, ProductPagingBenchmark, compares the keyset pages of
+ * IProductRepository (findPageAfter, findPriceRangePageAfter) with skip/limit
+ * pages at increasing depths. The keyset pages should take the same time at
+ * any depth, the skip pages grow with the depth.
+ *
+ * It needs a local MongoDB, by default mongodb://localhost:27018 as in
+ * application.properties, and seeds the "benchmark" database with the given
+ * number of products on the first run, 10 million by default:
+ * -Dbenchmark.mongo.uri=... -Dbenchmark.documents=...
+ *
+ * @author seanea
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductPagingBenchmark {
+	private static final int LIMIT = 100;
+
+	@Param({ "0", "1000", "10000", "100000" })
+	private int page;
+
+	private MongoClient client;
+	private ReactiveMongoTemplate template;
+	private IProductRepositoryCustomImpl repository;
+	private String afterId;
+	private double afterPrice;
+	private String afterPriceId;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		String uri = System.getProperty("benchmark.mongo.uri", "mongodb://localhost:27018");
+		long documents = Long.getLong("benchmark.documents", 10_000_000L);
+
+		client = MongoClients.create(uri);
+		template = BenchmarkMongo.template(client, "benchmark");
+		repository = new IProductRepositoryCustomImpl();
+		ReflectionTestUtils.setField(repository, "template", template);
+
+		BenchmarkMongo.seed(template, documents);
+
+		// The cursors of the page are found once with skip, outside of the measurement.
+		Product last = template.findOne(new Query().with(Sort.by("id")).skip((long) page * LIMIT), Product.class)
+				.block();
+		afterId = last.getId();
+		Product lastInRange = template.findOne(Query.query(Criteria.where("price").gte(0.0).lte(1000.0))
+				.with(Sort.by("price", "id")).skip((long) page * LIMIT), Product.class).block();
+		afterPrice = lastInRange.getPrice();
+		afterPriceId = lastInRange.getId();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		client.close();
+	}
+
+	@Benchmark
+	public List<ProductDto> keysetById() {
+		return repository.findPageAfter(afterId, LIMIT).collectList().block();
+	}
+
+	@Benchmark
+	public List<Product> skipLimitById() {
+		return template.find(new Query().with(Sort.by("id")).skip((long) page * LIMIT).limit(LIMIT), Product.class)
+				.collectList().block();
+	}
+
+	@Benchmark
+	public List<ProductDto> keysetByPriceRange() {
+		return repository.findPriceRangePageAfter(0.0, 1000.0, afterPrice, afterPriceId, LIMIT).collectList().block();
+	}
+
+	@Benchmark
+	public List<Product> skipLimitByPriceRange() {
+		return template.find(Query.query(Criteria.where("price").gte(0.0).lte(1000.0)).with(Sort.by("price", "id"))
+				.skip((long) page * LIMIT).limit(LIMIT), Product.class).collectList().block();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ProductPagingBenchmark.class.getSimpleName()).build()).run();
+	}
+}
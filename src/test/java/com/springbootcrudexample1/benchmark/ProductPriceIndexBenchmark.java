@@ -0,0 +1,92 @@
+package com.springbootcrudexample1.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.springbootcrudexample1.cache.ProductPriceIndex;
+import com.springbootcrudexample1.repository.IProductRepositoryCustomImpl;
+
+/**
+ * This class, ProductPriceIndexBenchmark, compares the price range read from
+ * the in-memory ProductPriceIndex with the streamByPriceBetween cursor on the
+ * (price, _id) index, for narrow and wide ranges of prices between 0 and 1000.
+ *
+ * It needs a local MongoDB, by default mongodb://localhost:27018 as in
+ * application.properties, and seeds a "benchmark_<documents>" database per
+ * number of products on the first run: -Dbenchmark.mongo.uri=... The index
+ * of 10 million products needs a few GB of heap, hence -Xmx8g.
+ *
+ * @author seanea
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ProductPriceIndexBenchmark {
+	private static final double MIN = 500.0;
+
+	@Param({ "1000000", "10000000" })
+	private long documents;
+
+	@Param({ "0.1", "10" })
+	private double width;
+
+	private MongoClient client;
+	private IProductRepositoryCustomImpl repository;
+	private ProductPriceIndex priceIndex;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		client = MongoClients.create(System.getProperty("benchmark.mongo.uri", "mongodb://localhost:27018"));
+		ReactiveMongoTemplate template = BenchmarkMongo.template(client, "benchmark_" + documents);
+		repository = new IProductRepositoryCustomImpl();
+		ReflectionTestUtils.setField(repository, "template", template);
+
+		BenchmarkMongo.seed(template, documents);
+
+		priceIndex = new ProductPriceIndex();
+		priceIndex.build(repository.streamAll(10_000).collectList().block());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		client.close();
+	}
+
+	@Benchmark
+	public Long priceIndex() {
+		return priceIndex.findByPriceBetween(MIN, MIN + width).count().block();
+	}
+
+	@Benchmark
+	public Long mongoCursor() {
+		return repository.streamByPriceBetween(MIN, MIN + width, 256).count().block();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ProductPriceIndexBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,155 @@
+package com.springbootcrudexample1.benchmark;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.types.ObjectId;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springbootcrudexample1.cache.ProductCache;
+import com.springbootcrudexample1.event.ProductEventPublisher;
+import com.springbootcrudexample1.metrics.ProductMetrics;
+import com.springbootcrudexample1.model.BulkItemResult;
+import com.springbootcrudexample1.model.Product;
+import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.model.ProductLookupResult;
+import com.springbootcrudexample1.repository.IProductRepository;
+import com.springbootcrudexample1.service.ProductBatchLoader;
+import com.springbootcrudexample1.service.ProductService;
+import com.springbootcrudexample1.utils.AppUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+
+/**
+ * This class, ProductServicePipelineBenchmark, measures the Reactor pipelines
+ * of ProductService on their own, with a repository which answers at once:
+ * the streaming of all products, the multi-get, the bulk write batches and
+ * the cached read by id. A regression here is in the service, not in Mongo.
+ *
+ * The repository is a Mockito stub, called once per operation (once per
+ * batch for the bulk write), so its cost is part of each measurement.
+ *
+ * @author seanea
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductServicePipelineBenchmark {
+	private static final int PRODUCTS = 1_000;
+	private static final int MULTI_GET_IDS = 50;
+
+	private ProductService productService;
+	private ProductBatchLoader batchLoader;
+	private List<ProductDto> productDtos;
+	private List<String> ids;
+
+	@Setup
+	public void setUp() {
+		productDtos = new ArrayList<>(PRODUCTS);
+		List<Product> products = new ArrayList<>(PRODUCTS);
+		for (int i = 0; i < PRODUCTS; i++) {
+			ProductDto productDto = new ProductDto(new ObjectId().toHexString(), "PRD-" + i, "Product " + i, i / 10.0);
+			productDtos.add(productDto);
+			products.add(AppUtils.dtoToEntity(productDto));
+		}
+		ids = new ArrayList<>();
+		for (int i = 0; i < MULTI_GET_IDS; i++) {
+			ids.add(productDtos.get(i * 7).getId());
+		}
+
+		IProductRepository repository = Mockito.mock(IProductRepository.class);
+		Mockito.when(repository.streamAll(Mockito.anyInt())).thenAnswer(invocation -> Flux.fromIterable(productDtos));
+		Mockito.when(repository.findAllById(Mockito.<Iterable<String>>any()))
+				.thenAnswer(invocation -> Flux.fromIterable(products.subList(0, MULTI_GET_IDS)));
+		Mockito.when(repository.bulkWrite(Mockito.anyList(), Mockito.anyLong(), Mockito.anyBoolean()))
+				.thenAnswer(invocation -> {
+					List<Product> batch = invocation.getArgument(0);
+					long offset = invocation.getArgument(1);
+					return Flux.range(0, batch.size()).map(i -> new BulkItemResult(offset + i,
+							productDtos.get(i).getId(), BulkItemResult.INSERTED, null));
+				});
+
+		ProductMetrics metrics = new ProductMetrics(new SimpleMeterRegistry());
+		batchLoader = new ProductBatchLoader(repository, metrics, 100, Duration.ofMillis(2));
+		batchLoader.start();
+
+		productService = new ProductService();
+		ReflectionTestUtils.setField(productService, "repository", repository);
+		ReflectionTestUtils.setField(productService, "productDtoReader", new ObjectMapper().readerFor(ProductDto.class));
+		ReflectionTestUtils.setField(productService, "productCache", new ProductCache(10_000, Duration.ofMinutes(5)));
+		ReflectionTestUtils.setField(productService, "batchLoader", batchLoader);
+		ReflectionTestUtils.setField(productService, "events", new ProductEventPublisher());
+		ReflectionTestUtils.setField(productService, "metrics", metrics);
+		ReflectionTestUtils.setField(productService, "bulkBatchSize", 500);
+		ReflectionTestUtils.setField(productService, "cursorBatchSize", 256);
+		ReflectionTestUtils.setField(productService, "maxPageLimit", 1000);
+		ReflectionTestUtils.setField(productService, "maxMultiGetIds", 1000);
+
+		// The product read by id is cached from now on.
+		productService.getProductById(ids.get(0)).block();
+	}
+
+	@TearDown
+	public void tearDown() {
+		batchLoader.stop();
+	}
+
+	/**
+	 * All of the products streamed, 1000 per operation.
+	 */
+	@Benchmark
+	public Long streamAllProducts() {
+		return productService.getAllProducts().count().block();
+	}
+
+	/**
+	 * A multi-get of 50 ids, ordered and checked for missing products.
+	 */
+	@Benchmark
+	public List<ProductLookupResult> multiGet() {
+		return productService.getProductsByIds(ids).collectList().block();
+	}
+
+	/**
+	 * A bulk write of 1000 products, in two batches.
+	 */
+	@Benchmark
+	public Long bulkWrite() {
+		return productService.saveProducts(Flux.fromIterable(productDtos), true).count().block();
+	}
+
+	/**
+	 * A read by id served by the product cache.
+	 */
+	@Benchmark
+	public ProductDto cachedProductById() {
+		return productService.getProductById(ids.get(0)).block();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ProductServicePipelineBenchmark.class.getSimpleName()).build()).run();
+	}
+}
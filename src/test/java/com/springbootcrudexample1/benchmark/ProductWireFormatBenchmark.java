@@ -0,0 +1,89 @@
+package com.springbootcrudexample1.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.springbootcrudexample1.model.ProductDto;
+
+/**
+ * This class, ProductWireFormatBenchmark, compares the wire formats offered
+ * by ProductController for a batch of 1000 products, JSON and Smile, with
+ * CBOR as a reference which is not offered, encoded and decoded by Jackson as
+ * the WebFlux codecs do. The payload size of
+ * each format is printed by the setup.
+ *
+ * Run it with the main method, or with "-prof gc" to also see allocations.
+ *
+ * @author seanea
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductWireFormatBenchmark {
+	@Param({ "json", "smile", "cbor" })
+	private String format;
+
+	private List<ProductDto> products;
+	private ObjectWriter writer;
+	private ObjectReader reader;
+	private byte[] payload;
+
+	@Setup
+	public void setUp() throws IOException {
+		Random random = new Random(42);
+		products = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			products.add(new ProductDto(new ObjectId().toHexString(), "PRD-" + i, "Product " + i,
+					Math.round(random.nextDouble() * 100000) / 100.0, (long) random.nextInt(10)));
+		}
+
+		ObjectMapper mapper = "smile".equals(format) ? new SmileMapper()
+				: "cbor".equals(format) ? new CBORMapper() : new ObjectMapper();
+		writer = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, ProductDto.class));
+		reader = mapper.readerForListOf(ProductDto.class);
+		payload = writer.writeValueAsBytes(products);
+		System.out.println(format + " payload: " + payload.length + " bytes for " + products.size() + " products");
+	}
+
+	@Benchmark
+	public byte[] encode() throws IOException {
+		return writer.writeValueAsBytes(products);
+	}
+
+	@Benchmark
+	public List<ProductDto> decode() throws IOException {
+		return reader.readValue(payload);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ProductWireFormatBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,160 @@
+package com.springbootcrudexample1.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.model.ProductEvent;
+import com.springbootcrudexample1.repository.IProductRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+/**
+ * This class, OffHeapProductStoreTest, is the unit-test for the
+ * OffHeapProductStore class. It tests the reads of the products from their
+ * records, after updates, deletes and compactions, the events received
+ * during the load, and the reload of the products.
+ *
+ * @author seanea
+ *
+ */
+public class OffHeapProductStoreTest {
+	private OffHeapProductStore store = new OffHeapProductStore();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(store, "segmentSize", DataSize.ofBytes(256));
+	}
+
+	/**
+	 * This unit-test case, test_put_get_and_remove, tests
+	 * the get() method reads the last product put, with its null fields, and
+	 * nothing once it is removed.
+	 *
+	 * @throws Exception The Exception when the test_put_get_and_remove() test fails.
+	 */
+	@Test
+	void test_put_get_and_remove() throws Exception {
+		store.put(new ProductDto("id00", "productNum00", "name00", 10.0, 1L));
+		store.put(new ProductDto("id00", null, "Bouteille d'eau", 12.5, null));
+
+		StepVerifier.create(store.get("id00"))
+				.expectNext(new ProductDto("id00", null, "Bouteille d'eau", 12.5, null)).verifyComplete();
+
+		store.remove("id00");
+
+		StepVerifier.create(store.get("id00")).verifyComplete();
+		assertEquals(store.stats().get("products"), 0);
+	}
+
+	/**
+	 * This unit-test case, test_all_after_compaction, tests
+	 * the all() method streams only the live products, across segments, and
+	 * after the dead records have been compacted.
+	 *
+	 * @throws Exception The Exception when the test_all_after_compaction() test fails.
+	 */
+	@Test
+	void test_all_after_compaction() throws Exception {
+		for (int i = 0; i < 20; i++) {
+			store.put(new ProductDto("id0" + (i % 4), "productNum0" + (i % 4), "name" + i, i, (long) i));
+		}
+
+		StepVerifier.create(store.all().map(ProductDto::getName).collectList())
+				.expectNextMatches(names -> names.size() == 4 && names.containsAll(List.of("name16", "name17",
+						"name18", "name19")))
+				.verifyComplete();
+		StepVerifier.create(store.get("id02").map(ProductDto::getVersion)).expectNext(18L).verifyComplete();
+		assertTrue((long) store.stats().get("garbageBytes") < (long) store.stats().get("liveBytes") + 256);
+	}
+
+	/**
+	 * This unit-test case, test_update_during_all, tests
+	 * the all() method streams each product once, as it was when the stream
+	 * was subscribed, when the products are updated during the stream.
+	 *
+	 * @throws Exception The Exception when the test_update_during_all() test fails.
+	 */
+	@Test
+	void test_update_during_all() throws Exception {
+		for (int i = 0; i < 4; i++) {
+			store.put(new ProductDto("id0" + i, "productNum0" + i, "name0" + i, i, 0L));
+		}
+
+		StepVerifier.create(store.all().map(ProductDto::getVersion), 1).expectNext(0L).then(() -> {
+			for (int i = 0; i < 4; i++) {
+				store.put(new ProductDto("id0" + i, "productNum0" + i, "name0" + i, i, 1L));
+			}
+		}).thenRequest(Long.MAX_VALUE).expectNext(0L, 0L, 0L).verifyComplete();
+		StepVerifier.create(store.all().map(ProductDto::getVersion)).expectNext(1L, 1L, 1L, 1L).verifyComplete();
+	}
+
+	/**
+	 * This unit-test case, test_events_during_load, tests
+	 * the events received before the end of the load are applied after it,
+	 * over the products loaded.
+	 *
+	 * @throws Exception The Exception when the test_events_during_load() test fails.
+	 */
+	@Test
+	void test_events_during_load() throws Exception {
+		store.apply(new ProductEvent(ProductEvent.DELETED, "id00", null));
+		store.put(new ProductDto("id00", "productNum00", "name00", 10.0));
+		store.put(new ProductDto("id01", "productNum01", "name01", 20.0));
+		store.loaded();
+
+		StepVerifier.create(store.get("id00")).verifyComplete();
+		StepVerifier.create(store.get("id01").map(ProductDto::getPrice)).expectNext(20.0).verifyComplete();
+	}
+
+	/**
+	 * This unit-test case, test_reloaded_event, tests
+	 * a "reloaded" event replaces the products of the store with the ones
+	 * loaded again from the repository.
+	 *
+	 * @throws Exception The Exception when the test_reloaded_event() test fails.
+	 */
+	@Test
+	void test_reloaded_event() throws Exception {
+		IProductRepository repository = Mockito.mock(IProductRepository.class);
+		Mockito.when(repository.streamAll(Mockito.anyInt()))
+				.thenReturn(Flux.just(new ProductDto("id01", "productNum01", "name01", 21.0, 2L)));
+		ReflectionTestUtils.setField(store, "repository", repository);
+		store.put(new ProductDto("id00", "productNum00", "name00", 10.0));
+		store.put(new ProductDto("id01", "productNum01", "name01", 20.0));
+		store.loaded();
+
+		store.apply(new ProductEvent(ProductEvent.RELOADED, null, null));
+
+		assertTrue(store.isReady());
+		StepVerifier.create(store.get("id00")).verifyComplete();
+		StepVerifier.create(store.all().map(ProductDto::getPrice)).expectNext(21.0).verifyComplete();
+	}
+
+	/**
+	 * This unit-test case, test_bytes_per_product, tests
+	 * the stats() method reports fewer off-heap bytes per product than the
+	 * estimated heap bytes.
+	 *
+	 * @throws Exception The Exception when the test_bytes_per_product() test fails.
+	 */
+	@Test
+	void test_bytes_per_product() throws Exception {
+		store.put(new ProductDto("62bc4f3a9d1e8a2f5c7b1a23", "PRD-000123456", "Water bottle", 24.99, 3L));
+
+		Map<String, Object> stats = store.stats();
+
+		assertEquals(stats.get("liveBytes"), 17L + 2 + 24 + 2 + 13 + 2 + 12);
+		assertTrue((double) stats.get("bytesPerProduct") < (double) stats.get("heapBytesPerProduct"));
+	}
+}
@@ -0,0 +1,89 @@
+package com.springbootcrudexample1.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.springbootcrudexample1.model.ProductDto;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+/**
+ * This class, ProductCacheTest, is the unit-test for the ProductCache class. 
+ * It tests the loading, sharing and invalidation of the cached products.
+ * 
+ * @author seanea
+ *
+ */
+public class ProductCacheTest {
+	private ProductCache productCache = new ProductCache(100, Duration.ofMinutes(1));
+	private ProductDto productDto = new ProductDto("id00", "productNum00", "name00", 10.0);
+
+	/**
+	 * This unit-test case, test_concurrent_misses_share_one_load, tests
+	 * the get() method loads a product once for concurrent misses.
+	 * 
+	 * @throws Exception The Exception when the test_concurrent_misses_share_one_load() test fails.
+	 */
+	@Test
+	void test_concurrent_misses_share_one_load() throws Exception {
+		AtomicInteger loads = new AtomicInteger();
+		Sinks.One<ProductDto> pending = Sinks.one();
+
+		Mono<ProductDto> first = productCache.get("id00", id -> {
+			loads.incrementAndGet();
+			return pending.asMono();
+		});
+		Mono<ProductDto> second = productCache.get("id00", id -> {
+			loads.incrementAndGet();
+			return pending.asMono();
+		});
+
+		StepVerifier.create(Mono.zip(first, second))
+				.then(() -> pending.tryEmitValue(productDto))
+				.expectNextMatches(both -> both.getT1() == productDto && both.getT2() == productDto)
+				.verifyComplete();
+		assertEquals(loads.get(), 1);
+		assertEquals(productCache.stats().missCount(), 1);
+	}
+
+	/**
+	 * This unit-test case, test_missing_product_is_not_cached, tests
+	 * the get() method loads again a product which did not exist.
+	 * 
+	 * @throws Exception The Exception when the test_missing_product_is_not_cached() test fails.
+	 */
+	@Test
+	void test_missing_product_is_not_cached() throws Exception {
+		AtomicInteger loads = new AtomicInteger();
+
+		for (int i = 0; i < 2; i++) {
+			StepVerifier.create(productCache.get("id00", id -> {
+				loads.incrementAndGet();
+				return Mono.empty();
+			})).verifyComplete();
+		}
+		assertEquals(loads.get(), 2);
+	}
+
+	/**
+	 * This unit-test case, test_put_and_invalidate, tests
+	 * the put() and invalidate() methods.
+	 * 
+	 * @throws Exception The Exception when the test_put_and_invalidate() test fails.
+	 */
+	@Test
+	void test_put_and_invalidate() throws Exception {
+		productCache.put(productDto);
+		StepVerifier.create(productCache.get("id00", id -> Mono.error(new IllegalStateException())))
+				.expectNext(productDto).verifyComplete();
+
+		productCache.invalidate("id00");
+		StepVerifier.create(productCache.get("id00", id -> Mono.empty())).verifyComplete();
+	}
+}
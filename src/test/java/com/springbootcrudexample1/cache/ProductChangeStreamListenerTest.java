@@ -0,0 +1,110 @@
+package com.springbootcrudexample1.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoSocketReadException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.model.changestream.OperationType;
+import com.springbootcrudexample1.event.ProductEventPublisher;
+import com.springbootcrudexample1.model.Product;
+import com.springbootcrudexample1.model.ProductDto;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * This class, ProductChangeStreamListenerTest, is the unit-test for the
+ * ProductChangeStreamListener class. It tests the changes of the product
+ * collection are applied to the product cache.
+ * 
+ * @author seanea
+ *
+ */
+public class ProductChangeStreamListenerTest {
+	private ProductCache productCache = new ProductCache(100, Duration.ofMinutes(1));
+	private ProductEventPublisher events = new ProductEventPublisher();
+	private ProductChangeStreamListener listener = new ProductChangeStreamListener();
+	private Product product = new Product("id00", "productNum00", "name00", 10.0);
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(listener, "productCache", productCache);
+		ReflectionTestUtils.setField(listener, "events", events);
+	}
+
+	/**
+	 * This unit-test case, test_update_from_another_instance, tests
+	 * an update puts the product, as changed, in the cache.
+	 * 
+	 * @throws Exception The Exception when the test_update_from_another_instance() test fails.
+	 */
+	@Test
+	void test_update_from_another_instance() throws Exception {
+		productCache.put(new ProductDto("id00", "productNum00", "name00", 9.0));
+
+		listener.apply(OperationType.UPDATE, "id00", product);
+
+		StepVerifier.create(productCache.get("id00", id -> Mono.empty()))
+				.expectNextMatches(p -> p.getPrice() == 10.0).verifyComplete();
+	}
+
+	/**
+	 * This unit-test case, test_delete_from_another_instance, tests
+	 * a delete removes the product from the cache.
+	 * 
+	 * @throws Exception The Exception when the test_delete_from_another_instance() test fails.
+	 */
+	@Test
+	void test_delete_from_another_instance() throws Exception {
+		listener.apply(OperationType.INSERT, "id00", product);
+		listener.apply(OperationType.DELETE, "id00", null);
+
+		StepVerifier.create(productCache.get("id00", id -> Mono.empty())).verifyComplete();
+	}
+
+	/**
+	 * This unit-test case, test_drop_of_the_collection, tests
+	 * a drop of the collection empties the cache.
+	 * 
+	 * @throws Exception The Exception when the test_drop_of_the_collection() test fails.
+	 */
+	@Test
+	void test_drop_of_the_collection() throws Exception {
+		listener.apply(OperationType.INSERT, "id00", product);
+		listener.apply(OperationType.DROP, null, null);
+
+		StepVerifier.create(productCache.get("id00", id -> Mono.empty())).verifyComplete();
+	}
+
+	/**
+	 * This unit-test case, test_cannot_resume, tests
+	 * a lost change stream history, wrapped or not, is told from the other
+	 * failures of the change stream.
+	 * 
+	 * @throws Exception The Exception when the test_cannot_resume() test fails.
+	 */
+	@Test
+	void test_cannot_resume() throws Exception {
+		MongoCommandException historyLost = new MongoCommandException(
+				new BsonDocument("ok", new BsonInt32(0)).append("code", new BsonInt32(286))
+						.append("errmsg", new BsonString("Resume of change stream was not possible")),
+				new ServerAddress());
+
+		assertEquals(ProductChangeStreamListener.cannotResume(historyLost), true);
+		assertEquals(ProductChangeStreamListener.cannotResume(new UncategorizedMongoDbException("", historyLost)),
+				true);
+		assertEquals(ProductChangeStreamListener.cannotResume(new MongoSocketReadException("", new ServerAddress())),
+				false);
+	}
+}
@@ -0,0 +1,119 @@
+package com.springbootcrudexample1.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.model.ProductEvent;
+import com.springbootcrudexample1.repository.IProductRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+/**
+ * This class, ProductPriceIndexTest, is the unit-test for the ProductPriceIndex
+ * class. It tests the price ranges of the loaded products, and of the products
+ * changed since, before and after they are merged, and the reload of the
+ * products.
+ *
+ * @author seanea
+ *
+ */
+public class ProductPriceIndexTest {
+	private ProductPriceIndex priceIndex = new ProductPriceIndex();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(priceIndex, "mergeThreshold", 3);
+		priceIndex.build(List.of(new ProductDto("id02", "productNum02", "name02", 30.0),
+				new ProductDto("id00", "productNum00", "name00", 10.0),
+				new ProductDto("id01", "productNum01", "name01", 20.0),
+				new ProductDto("id03", "productNum03", "name03", 20.0)));
+	}
+
+	/**
+	 * This unit-test case, test_find_by_price_between, tests
+	 * the findByPriceBetween() method includes both bounds of the range.
+	 *
+	 * @throws Exception The Exception when the test_find_by_price_between() test fails.
+	 */
+	@Test
+	void test_find_by_price_between() throws Exception {
+		StepVerifier.create(priceIndex.findByPriceBetween(20.0, 30.0).map(ProductDto::getId).collectList())
+				.expectNextMatches(ids -> ids.size() == 3 && ids.containsAll(List.of("id01", "id02", "id03")))
+				.verifyComplete();
+		StepVerifier.create(priceIndex.findByPriceBetween(31.0, 40.0)).verifyComplete();
+	}
+
+	/**
+	 * This unit-test case, test_changes_before_and_after_merge, tests
+	 * the findByPriceBetween() method returns the changed products, moved or
+	 * deleted, both from the changes and once they are merged.
+	 *
+	 * @throws Exception The Exception when the test_changes_before_and_after_merge() test fails.
+	 */
+	@Test
+	void test_changes_before_and_after_merge() throws Exception {
+		priceIndex.apply(new ProductEvent(ProductEvent.UPDATED, "id00",
+				new ProductDto("id00", "productNum00", "name00", 25.0)));
+		priceIndex.apply(new ProductEvent(ProductEvent.DELETED, "id01", null));
+
+		StepVerifier.create(priceIndex.findByPriceBetween(15.0, 25.0).map(ProductDto::getId).collectList())
+				.expectNextMatches(ids -> ids.size() == 2 && ids.containsAll(List.of("id00", "id03")))
+				.verifyComplete();
+
+		// The third change reaches the threshold, and is merged with the others.
+		priceIndex.apply(new ProductEvent(ProductEvent.CREATED, "id04",
+				new ProductDto("id04", "productNum04", "name04", 5.0)));
+
+		StepVerifier.create(priceIndex.findByPriceBetween(0.0, 100.0).map(ProductDto::getId).collectList())
+				.expectNext(List.of("id04", "id03", "id00", "id02")).verifyComplete();
+	}
+
+	/**
+	 * This unit-test case, test_change_during_a_query, tests
+	 * a product changed while a query streams the products is not streamed a
+	 * second time, from the changes.
+	 *
+	 * @throws Exception The Exception when the test_change_during_a_query() test fails.
+	 */
+	@Test
+	void test_change_during_a_query() throws Exception {
+		StepVerifier.create(priceIndex.findByPriceBetween(0.0, 100.0).map(ProductDto::getId), 1).expectNext("id00")
+				.then(() -> priceIndex.apply(new ProductEvent(ProductEvent.UPDATED, "id00",
+						new ProductDto("id00", "productNum00", "name00", 25.0))))
+				.thenRequest(Long.MAX_VALUE).expectNextCount(3).verifyComplete();
+	}
+
+	/**
+	 * This unit-test case, test_reloaded_event, tests
+	 * a "reloaded" event empties the index, and loads it again from the
+	 * repository.
+	 *
+	 * @throws Exception The Exception when the test_reloaded_event() test fails.
+	 */
+	@Test
+	void test_reloaded_event() throws Exception {
+		IProductRepository repository = Mockito.mock(IProductRepository.class);
+		Mockito.when(repository.streamAll(Mockito.anyInt()))
+				.thenReturn(Flux.just(new ProductDto("id00", "productNum00", "name00", 11.0)), Flux.never());
+		ReflectionTestUtils.setField(priceIndex, "repository", repository);
+
+		priceIndex.apply(new ProductEvent(ProductEvent.RELOADED, null, null));
+
+		assertEquals(priceIndex.isReady(), true);
+		StepVerifier.create(priceIndex.findByPriceBetween(0.0, 100.0).map(ProductDto::getPrice))
+				.expectNext(11.0).verifyComplete();
+
+		// Until the products are loaded again, the price ranges are read from MongoDB.
+		priceIndex.apply(new ProductEvent(ProductEvent.RELOADED, null, null));
+
+		assertEquals(priceIndex.isReady(), false);
+	}
+}
@@ -0,0 +1,95 @@
+package com.springbootcrudexample1.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.springbootcrudexample1.service.ProductService;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * This class, AdminControllerTest, is the unit-test for the AdminController class. It tests
+ * the REST end-points for the administration of this application.
+ * 
+ * @author seanea
+ *
+ */
+@WebFluxTest(controllers = AdminController.class)
+public class AdminControllerTest {
+	// Mock the ProductService class, so the end-points are tested without
+	// having to perform the actual database access.
+	@MockBean
+	private ProductService productService;
+
+	@Autowired
+	private WebTestClient webTestClient;
+
+	/**
+	 * This unit test case "test_end_point_get_index_stats" tests the
+	 * retrieval of the usage statistics of the product indexes.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_get_index_stats() test fails.
+	 */
+	@Test
+	public void test_end_point_get_index_stats() throws Exception {
+		Document priceIndex = new Document("name", "price_id").append("key", new Document("price", 1).append("_id", 1))
+				.append("accesses", new Document("ops", 42L));
+
+		Mockito.when(productService.getIndexStats()).thenReturn(Flux.just(priceIndex));
+
+		webTestClient.get().uri("/admin/indexes").exchange().expectStatus().isOk()
+				.expectBody(new ParameterizedTypeReference<List<Map<String, Object>>>() {
+				}).consumeWith(result -> {
+					List<Map<String, Object>> responseBody = result.getResponseBody();
+					assertEquals(responseBody.get(0).get("name"), "price_id");
+					assertEquals(((Map<?, ?>) responseBody.get(0).get("accesses")).get("ops"), 42);
+				});
+
+		Mockito.verify(productService, times(1)).getIndexStats();
+	}
+
+	/**
+	 * This unit test case "test_end_point_get_cache_stats" tests the
+	 * retrieval of the statistics of the product cache.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_get_cache_stats() test fails.
+	 */
+	@Test
+	public void test_end_point_get_cache_stats() throws Exception {
+		Mockito.when(productService.getCacheStats()).thenReturn(Map.of("hits", 3L, "misses", 1L));
+
+		webTestClient.get().uri("/admin/cache").exchange().expectStatus().isOk().expectBody()
+				.jsonPath("$.hits").isEqualTo(3).jsonPath("$.misses").isEqualTo(1);
+
+		Mockito.verify(productService, times(1)).getCacheStats();
+	}
+
+	/**
+	 * This unit test case "test_end_point_get_off_heap_store_stats" tests the
+	 * retrieval of the memory statistics of the off-heap product store.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_get_off_heap_store_stats() test fails.
+	 */
+	@Test
+	public void test_end_point_get_off_heap_store_stats() throws Exception {
+		Mockito.when(productService.getOffHeapStoreStats())
+				.thenReturn(Map.of("enabled", true, "bytesPerProduct", 64.0, "heapBytesPerProduct", 200.0));
+
+		webTestClient.get().uri("/admin/off-heap-store").exchange().expectStatus().isOk().expectBody()
+				.jsonPath("$.bytesPerProduct").isEqualTo(64.0).jsonPath("$.heapBytesPerProduct").isEqualTo(200.0);
+
+		Mockito.verify(productService, times(1)).getOffHeapStoreStats();
+	}
+}
@@ -3,9 +3,13 @@ package com.springbootcrudexample1.controller;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.times;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.runner.RunWith;
@@ -14,11 +18,24 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.springbootcrudexample1.event.ProductCatalogVersion;
+import com.springbootcrudexample1.model.BulkItemResult;
+import com.springbootcrudexample1.model.PriceBucket;
+import com.springbootcrudexample1.model.PriceStats;
 import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.model.ProductLookupResult;
+import com.springbootcrudexample1.model.ProductPage;
+import com.springbootcrudexample1.model.RepriceJob;
+import com.springbootcrudexample1.model.RepriceRequest;
+import com.springbootcrudexample1.service.ProductConflictException;
 import com.springbootcrudexample1.service.ProductService;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -36,6 +53,8 @@ import reactor.core.publisher.Mono;
 @RunWith(SpringRunner.class)
 @WebFluxTest(controllers = ProductController.class)
 public class ProductControllerTest {
+	private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
 	// Mock the ProductService class by creating an instance of it and inject the
 	// instance into the application context.
 	// The Mocked instance can then be used to test the methods, the REST end-points
@@ -53,6 +72,15 @@ public class ProductControllerTest {
 	// application context.
 	@Autowired
 	private WebTestClient webTestClient;
+
+	// The catalog version tags the collection end-points, unchanged unless a test
+	// records a change.
+	private ProductCatalogVersion catalogVersion = new ProductCatalogVersion();
+
+	@BeforeEach
+	public void setUp() {
+		Mockito.lenient().when(productService.getCatalogVersion()).thenAnswer(invocation -> catalogVersion.get());
+	}
 	
 	/**
 	 * This unit test case "test_end_point_get_all_products" tests the
@@ -278,7 +306,6 @@ public class ProductControllerTest {
 		productDto_00.setName("name00");
 		productDto_00.setPrice(10.0);
 
-		String jsonStringProductDto_00 = "{\"id\":\"id00\",\"productNum\":\"productNum00\",\"name\":\"name00\",\"price\":10.0}";
 		Mono<ProductDto> productDtoMono = Mono.just(productDto_00);
 
 		// Mock the end-point for HTTP POST.
@@ -290,15 +317,15 @@ public class ProductControllerTest {
 		// is related to the code:
 		// webTestClient.post().uri("/products").exchange(). ...
 		// --------------
-		// When the productService.saveProduct(jsonStringProductDto_00) is invoked, at
+		// When the productService.saveProduct(Mono<ProductDto>) is invoked, at
 		// the "/products" HTTP POST end-point, it does nothing and simply return
 		// what the HTTP POST end-point is supposed to return, i.e. the object of
 		// Mono<ProductDto>.
-		Mockito.when(productService.saveProduct(jsonStringProductDto_00)).thenReturn(productDtoMono);
+		Mockito.when(productService.saveProduct(Mockito.<Mono<ProductDto>>any())).thenReturn(productDtoMono);
 
 		// Test end-point, HTTP POST.
 		// --------------
-		// The productService.saveProduct(jsonStringProductDto_00) method is invoked at the
+		// The productService.saveProduct(Mono<ProductDto>) method is invoked at the
 		// HTTP POST end-point "/products".
 		// The List<ProductDto> object is returned in the "result" in the form of the
 		// ResponseBody.
@@ -315,9 +342,9 @@ public class ProductControllerTest {
 					assertEquals(responseBody.get(0).getPrice(), 10.0);
 				});
 
-		// Verify that the productService.saveProduct(jsonStringProductDto_00) method is
+		// Verify that the productService.saveProduct(Mono<ProductDto>) method is
 		// invoked one time, once.
-		Mockito.verify(productService, times(1)).saveProduct(jsonStringProductDto_00);
+		Mockito.verify(productService, times(1)).saveProduct(Mockito.<Mono<ProductDto>>any());
 	}
 
 	/**
@@ -336,7 +363,6 @@ public class ProductControllerTest {
 		productDto_00.setPrice(10.0);
 
 		Mono<ProductDto> productDtoMono = Mono.just(productDto_00);
-		String jsonStringProductDto_00 = "{\"id\":\"id00\",\"productNum\":\"productNum00\",\"name\":\"name00\",\"price\":10.0}";
 
 		// Mock the end-point for HTTP POST.
 		// --------------
@@ -346,15 +372,15 @@ public class ProductControllerTest {
 		// is related to the code:
 		// webTestClient.post().uri("/products/update").exchange(). ...
 		// --------------
-		// When the productService.updateProduct(jsonStringProductDto_00) is invoked, at
+		// When the productService.updateProduct(Mono<ProductDto>) is invoked, at
 		// the "/products/update" HTTP POST end-point, it does nothing and simply return
 		// what the POST end-point is supposed to return, i.e. the object of
 		// Mono<ProductDto>.
-		Mockito.when(productService.updateProduct(jsonStringProductDto_00)).thenReturn(productDtoMono);
+		Mockito.when(productService.updateProduct(Mockito.<Mono<ProductDto>>any())).thenReturn(productDtoMono);
 
 		// Test end-point, HTTP POST.
 		// --------------
-		// The productService.updateProduct(String aJsonString) method is invoked at the
+		// The productService.updateProduct(Mono<ProductDto>) method is invoked at the
 		// POST end-point "/products/update". It returns the List<ProductDto> object in 
 		// the "result" in the form of the ResponseBody.
 		webTestClient.post().uri("/products/update").accept(MediaType.APPLICATION_JSON)
@@ -370,9 +396,9 @@ public class ProductControllerTest {
 					assertEquals(responseBody.get(0).getPrice(), 10.0);
 				});
 
-		// Verify that the productService.updateProduct(jsonStringProductDto_00) method is
+		// Verify that the productService.updateProduct(Mono<ProductDto>) method is
 		// invoked one time, once.
-		Mockito.verify(productService, times(1)).updateProduct(jsonStringProductDto_00);
+		Mockito.verify(productService, times(1)).updateProduct(Mockito.<Mono<ProductDto>>any());
 	}
 
 	/**
@@ -391,7 +417,6 @@ public class ProductControllerTest {
 		productDto_00.setPrice(10.0);
 
 		Mono<ProductDto> productDtoMono = Mono.just(productDto_00);
-		String jsonStringProductDto_00 = "{\"id\":\"id00\",\"productNum\":\"productNum00\",\"name\":\"name00\",\"price\":10.0}";
 
 		// Mock the end-point for HTTP POST.
 		// --------------
@@ -401,24 +426,418 @@ public class ProductControllerTest {
 		// is related to the code:
 		// webTestClient.post().uri("/products/delete").exchange(). ...
 		// --------------
-		// When the productService.deleteProduct(jsonStringProductDto_00) is invoked, at
+		// When the productService.deleteProduct(Mono<ProductDto>) is invoked, at
 		// the "/products/delete" HTTP POST end-point, it does nothing and simply return
-		// what the POST end-point is supposed to return, i.e. the object of
-		// Mono<Void> the same as Mono.empty().
-		Mockito.when(productService.deleteProduct(jsonStringProductDto_00)).thenReturn(Mono.empty());
+		// what the POST end-point is supposed to return, i.e. Mono.just(true)
+		// as the product has been removed.
+		Mockito.when(productService.deleteProduct(Mockito.<Mono<ProductDto>>any())).thenReturn(Mono.just(true));
 
 		// Test end-point, HTTP POST.
 		// --------------
-		// The productService.deleteProduct(jsonStringProductDto_00) method is invoked at the
+		// The productService.deleteProduct(Mono<ProductDto>) method is invoked at the
 		// POST end-point "/products/delete".
-		// Mono<Void> the same as Mono.empty() is returned in the "expectBodyList" which is empty, ie hasSize(0).
+		// An empty body is returned in the "expectBodyList" which is empty, ie hasSize(0).
 
 		webTestClient.post().uri("/products/delete").accept(MediaType.APPLICATION_JSON)
 				.body(productDtoMono, ProductDto.class).exchange().expectStatus().isOk()
 				.expectBodyList(ProductDto.class).hasSize(0);
 
-		// Verify that the deleteProduct(jsonStringProductDto_00) method is
+		// Verify that the deleteProduct(Mono<ProductDto>) method is
 		// invoked one time, once.
-		Mockito.verify(productService, times(1)).deleteProduct(jsonStringProductDto_00);
+		Mockito.verify(productService, times(1)).deleteProduct(Mockito.<Mono<ProductDto>>any());
+	}
+
+	/**
+	 * This unit test case "test_end_point_delete_missing_product", tests the
+	 * deleting of a product which does not exist by HTTP POST.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_delete_missing_product()
+	 *                   test fails.
+	 */
+	@Test
+	public void test_end_point_delete_missing_product() throws Exception {
+		ProductDto productDto_00 = new ProductDto();
+		productDto_00.setId("id00");
+
+		// When no product has been removed, the service returns Mono.just(false)
+		// and the end-point answers 404.
+		Mockito.when(productService.deleteProduct(Mockito.<Mono<ProductDto>>any())).thenReturn(Mono.just(false));
+
+		webTestClient.post().uri("/products/delete").accept(MediaType.APPLICATION_JSON)
+				.body(Mono.just(productDto_00), ProductDto.class).exchange().expectStatus().isNotFound();
+
+		Mockito.verify(productService, times(1)).deleteProduct(Mockito.<Mono<ProductDto>>any());
+	}
+
+	/**
+	 * This unit test case "test_end_point_update_outdated_product", tests the
+	 * updating of a product at an outdated version by HTTP POST.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_update_outdated_product()
+	 *                   test fails.
+	 */
+	@Test
+	public void test_end_point_update_outdated_product() throws Exception {
+		ProductDto productDto_00 = new ProductDto("id00", "productNum00", "name00", 10.0, 3L);
+
+		// When the product is no longer at the version, the service fails with
+		// a ProductConflictException and the end-point answers 409.
+		Mockito.when(productService.updateProduct(Mockito.<Mono<ProductDto>>any()))
+				.thenReturn(Mono.error(new ProductConflictException("id00", 3L)));
+
+		webTestClient.post().uri("/products/update").accept(MediaType.APPLICATION_JSON)
+				.body(Mono.just(productDto_00), ProductDto.class).exchange().expectStatus()
+				.isEqualTo(HttpStatus.CONFLICT);
+
+		Mockito.verify(productService, times(1)).updateProduct(Mockito.<Mono<ProductDto>>any());
+	}
+
+	/**
+	 * This unit test case "test_end_point_patch_product", tests the patching
+	 * of the price of a product by HTTP PATCH, as a JSON Merge Patch.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_patch_product() test fails.
+	 */
+	@Test
+	public void test_end_point_patch_product() throws Exception {
+		Mockito.when(productService.patchProduct(Mockito.eq("id00"), Mockito.<Mono<Map<String, Object>>>any()))
+				.thenReturn(Mono.just(new ProductDto("id00", "productNum00", "name00", 12.0, 1L)));
+
+		webTestClient.patch().uri("/products/id00").contentType(MediaType.valueOf("application/merge-patch+json"))
+				.bodyValue("{\"price\":12.0}").exchange().expectStatus().isOk().expectBody()
+				.jsonPath("$.price").isEqualTo(12.0).jsonPath("$.version").isEqualTo(1);
+
+		Mockito.verify(productService, times(1)).patchProduct(Mockito.eq("id00"),
+				Mockito.<Mono<Map<String, Object>>>any());
+	}
+
+	/**
+	 * This unit test case "test_end_point_patch_missing_product", tests the
+	 * patching of a product which does not exist by HTTP PATCH.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_patch_missing_product() test fails.
+	 */
+	@Test
+	public void test_end_point_patch_missing_product() throws Exception {
+		Mockito.when(productService.patchProduct(Mockito.eq("id00"), Mockito.<Mono<Map<String, Object>>>any()))
+				.thenReturn(Mono.empty());
+
+		webTestClient.patch().uri("/products/id00").contentType(MediaType.APPLICATION_JSON)
+				.bodyValue("{\"price\":12.0}").exchange().expectStatus().isNotFound();
+	}
+
+	/**
+	 * This unit test case "test_end_point_save_products_in_bulk", tests the
+	 * saving of many products by HTTP POST, as an NDJSON stream.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_save_products_in_bulk()
+	 *                   test fails.
+	 */
+	@Test
+	public void test_end_point_save_products_in_bulk() throws Exception {
+		String ndjson = "{\"productNum\":\"productNum00\",\"name\":\"name00\",\"price\":10.0}\n"
+				+ "{\"productNum\":\"productNum01\",\"name\":\"name01\",\"price\":11.0}\n";
+
+		// When the productService.saveProducts() is invoked, at the "/products/bulk"
+		// HTTP POST end-point, it reports both products as inserted.
+		Mockito.when(productService.saveProducts(Mockito.<Flux<ProductDto>>any(), Mockito.eq(false)))
+				.thenReturn(Flux.just(new BulkItemResult(0, "id00", BulkItemResult.INSERTED, null),
+						new BulkItemResult(1, "id01", BulkItemResult.INSERTED, null)));
+
+		webTestClient.post().uri("/products/bulk?ordered=false").contentType(MediaType.APPLICATION_NDJSON)
+				.bodyValue(ndjson).exchange().expectStatus().isOk().expectBodyList(BulkItemResult.class)
+				.consumeWith(result -> {
+					List<BulkItemResult> responseBody = result.getResponseBody();
+					assertEquals(responseBody.size(), 2);
+					assertEquals(responseBody.get(1).getId(), "id01");
+					assertEquals(responseBody.get(1).getStatus(), BulkItemResult.INSERTED);
+				});
+
+		Mockito.verify(productService, times(1)).saveProducts(Mockito.<Flux<ProductDto>>any(), Mockito.eq(false));
+	}
+
+	/**
+	 * This unit test case "test_end_point_stream_all_products", tests the
+	 * retrieval of all products in the database as an NDJSON stream.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_stream_all_products()
+	 *                   test fails.
+	 */
+	@Test
+	public void test_end_point_stream_all_products() throws Exception {
+		ProductDto productDto_00 = new ProductDto();
+		productDto_00.setId("id00");
+		productDto_00.setPrice(10.0);
+
+		ProductDto productDto_01 = new ProductDto();
+		productDto_01.setId("id01");
+		productDto_01.setPrice(11.0);
+
+		Mockito.when(productService.getAllProducts()).thenReturn(Flux.just(productDto_00, productDto_01));
+
+		// With "Accept: application/x-ndjson", the products are written one per line.
+		webTestClient.get().uri("/products").accept(MediaType.APPLICATION_NDJSON).exchange().expectStatus().isOk()
+				.expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON).expectBody(String.class)
+				.consumeWith(result -> {
+					String[] lines = result.getResponseBody().trim().split("\n");
+					assertEquals(lines.length, 2);
+					assertEquals(lines[1].contains("\"id01\""), true);
+				});
+
+		Mockito.verify(productService, times(1)).getAllProducts();
+	}
+
+	/**
+	 * This unit test case "test_end_point_get_products_page", tests the
+	 * retrieval of a page of products with a limit and a cursor.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_get_products_page()
+	 *                   test fails.
+	 */
+	@Test
+	public void test_end_point_get_products_page() throws Exception {
+		ProductDto productDto_00 = new ProductDto();
+		productDto_00.setId("id00");
+		productDto_00.setPrice(10.0);
+
+		// When the productService.getProductsPage() is invoked, at the "/products"
+		// GET end-point with a limit, it returns one product and the next cursor.
+		Mockito.when(productService.getProductsPage("cursor00", 1))
+				.thenReturn(Mono.just(new ProductPage(List.of(productDto_00), "cursor01")));
+
+		webTestClient.get().uri("/products?limit=1&after=cursor00").exchange().expectStatus().isOk()
+				.expectBody(ProductPage.class).consumeWith(result -> {
+					ProductPage responseBody = result.getResponseBody();
+					assertEquals(responseBody.getItems().get(0).getId(), "id00");
+					assertEquals(responseBody.getNext(), "cursor01");
+				});
+
+		Mockito.verify(productService, times(1)).getProductsPage("cursor00", 1);
+		Mockito.verify(productService, times(0)).getAllProducts();
+	}
+
+	/**
+	 * This unit test case "test_end_point_get_product_fields_in_price_range" tests
+	 * the retrieval of only some fields of the products between a price range.
+	 * 
+	 * @throws Exception The Exception when the
+	 *                   test_end_point_get_product_fields_in_price_range() test fails.
+	 */
+	@Test
+	public void test_end_point_get_product_fields_in_price_range() throws Exception {
+		Mockito.when(productService.getProductInRange(10.0, 15.0, List.of("id", "price")))
+				.thenReturn(Flux.just(Map.of("id", "id00", "price", 10.0)));
+
+		webTestClient.get().uri("/products/product_range?min=10.0&max=15.0&fields=id,price").exchange()
+				.expectStatus().isOk().expectBody(String.class).consumeWith(result -> {
+					// Only the requested fields are in the response.
+					String responseBody = result.getResponseBody();
+					assertEquals(responseBody.contains("\"price\":10.0"), true);
+					assertEquals(responseBody.contains("name"), false);
+				});
+
+		Mockito.verify(productService, times(1)).getProductInRange(10.0, 15.0, List.of("id", "price"));
+		Mockito.verify(productService, times(0)).getProductInRange(10.0, 15.0);
+	}
+
+	/**
+	 * This unit test case "test_end_point_batch_get_products" tests
+	 * the retrieval of many products by id in one request.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_batch_get_products() test fails.
+	 */
+	@Test
+	public void test_end_point_batch_get_products() throws Exception {
+		Mockito.when(productService.getProductsByIds(List.of("id01", "id00")))
+				.thenReturn(Flux.just(new ProductLookupResult("id01", ProductLookupResult.MISSING, null),
+						new ProductLookupResult("id00", ProductLookupResult.FOUND,
+								new ProductDto("id00", "productNum00", "name00", 10.0))));
+
+		webTestClient.post().uri("/products/batch-get").contentType(MediaType.APPLICATION_JSON)
+				.bodyValue("[\"id01\",\"id00\"]").exchange().expectStatus().isOk()
+				.expectBodyList(ProductLookupResult.class).consumeWith(result -> {
+					// The results follow the order of the ids, and report the missing one.
+					List<ProductLookupResult> results = result.getResponseBody();
+					assertEquals(results.get(0).getStatus(), ProductLookupResult.MISSING);
+					assertEquals(results.get(1).getProduct().getName(), "name00");
+				});
+
+		Mockito.verify(productService, times(1)).getProductsByIds(List.of("id01", "id00"));
+	}
+
+	/**
+	 * This unit test case "test_end_point_start_reprice" tests
+	 * the start of a repricing job in the background.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_start_reprice() test fails.
+	 */
+	@Test
+	public void test_end_point_start_reprice() throws Exception {
+		RepriceRequest request = new RepriceRequest(10.0, 100.0, 1.05, 0.0, 2);
+		Mockito.when(productService.startReprice(request)).thenReturn(Mono.just(new RepriceJob("job00", request)));
+
+		webTestClient.post().uri("/products/reprice").contentType(MediaType.APPLICATION_JSON).bodyValue(request)
+				.exchange().expectStatus().isAccepted().expectHeader().location("/products/reprice/job00")
+				.expectBody().jsonPath("$.status").isEqualTo(RepriceJob.RUNNING);
+
+		Mockito.verify(productService, times(1)).startReprice(request);
+	}
+
+	/**
+	 * This unit test case "test_end_point_get_price_stats" tests
+	 * the retrieval of the price statistics.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_get_price_stats() test fails.
+	 */
+	@Test
+	public void test_end_point_get_price_stats() throws Exception {
+		Mockito.when(productService.getPriceStats()).thenReturn(Mono.just(new PriceStats(3, 1.0, 30.0, 12.5)));
+
+		webTestClient.get().uri("/products/stats").exchange().expectStatus().isOk().expectBody(PriceStats.class)
+				.isEqualTo(new PriceStats(3, 1.0, 30.0, 12.5));
+
+		Mockito.verify(productService, times(1)).getPriceStats();
+	}
+
+	/**
+	 * This unit test case "test_end_point_get_price_histogram" tests
+	 * the retrieval of a price histogram, and the rejection of an invalid
+	 * number of buckets.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_get_price_histogram() test fails.
+	 */
+	@Test
+	public void test_end_point_get_price_histogram() throws Exception {
+		Mockito.when(productService.getPriceHistogram(2))
+				.thenReturn(Flux.just(new PriceBucket(1.0, 10.0, 5), new PriceBucket(10.0, 99.0, 5)));
+		Mockito.when(productService.getPriceHistogram(0))
+				.thenReturn(Flux.error(new IllegalArgumentException("buckets must be between 1 and 1000")));
+
+		webTestClient.get().uri("/products/price-histogram?buckets=2").exchange().expectStatus().isOk()
+				.expectBodyList(PriceBucket.class).hasSize(2);
+		webTestClient.get().uri("/products/price-histogram?buckets=0").exchange().expectStatus().isBadRequest();
+	}
+
+	/**
+	 * This unit test case "test_end_point_search_products" tests
+	 * the search by product number prefix, and the rejection of a search with
+	 * both a product number and a name.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_search_products() test fails.
+	 */
+	@Test
+	public void test_end_point_search_products() throws Exception {
+		Mockito.when(productService.searchByProductNumPrefix("PRD-", null, 20)).thenReturn(
+				Mono.just(new ProductPage(List.of(new ProductDto("id00", "PRD-00", "name00", 10.0)), null)));
+
+		webTestClient.get().uri("/products/search?productNum=PRD-").exchange().expectStatus().isOk().expectBody()
+				.jsonPath("$.items[0].productNum").isEqualTo("PRD-00");
+		webTestClient.get().uri("/products/search?productNum=PRD-&name=bottle").exchange().expectStatus()
+				.isBadRequest();
+
+		Mockito.verify(productService, times(1)).searchByProductNumPrefix("PRD-", null, 20);
+		Mockito.verifyNoMoreInteractions(productService);
+	}
+
+	/**
+	 * This unit test case "test_end_point_binary_formats" tests
+	 * the retrieval of a product as Smile, and the saving of a product sent as
+	 * Smile, both negotiated by the media types.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_binary_formats() test fails.
+	 */
+	@Test
+	public void test_end_point_binary_formats() throws Exception {
+		ProductDto productDto = new ProductDto("id00", "productNum00", "name00", 10.0, 1L);
+		Mockito.when(productService.getProductById("id00")).thenReturn(Mono.just(productDto));
+		Mockito.when(productService.saveProduct(Mockito.<Mono<ProductDto>>any()))
+				.thenAnswer(invocation -> invocation.<Mono<ProductDto>>getArgument(0));
+
+		webTestClient.get().uri("/products/id00").accept(SMILE).exchange().expectStatus().isOk()
+				.expectHeader().contentType(SMILE).expectBody(byte[].class)
+				.consumeWith(result -> assertEquals(read(new SmileMapper(), result.getResponseBody()), productDto));
+		webTestClient.post().uri("/products").contentType(SMILE).accept(MediaType.APPLICATION_JSON)
+				.bodyValue(new SmileMapper().writeValueAsBytes(productDto)).exchange().expectStatus().isOk()
+				.expectBody().jsonPath("$.name").isEqualTo("name00");
+	}
+
+	/**
+	 * This unit test case "test_end_point_json_without_accept" tests
+	 * the single and streamed end-points answer JSON to a request without an
+	 * Accept header.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_json_without_accept() test fails.
+	 */
+	@Test
+	public void test_end_point_json_without_accept() throws Exception {
+		Mockito.when(productService.getProductById("id00"))
+				.thenReturn(Mono.just(new ProductDto("id00", "productNum00", "name00", 10.0, 1L)));
+		Mockito.when(productService.getPriceStats()).thenReturn(Mono.just(new PriceStats(3, 1.0, 30.0, 12.5)));
+		Mockito.when(productService.getPriceHistogram(2))
+				.thenReturn(Flux.just(new PriceBucket(1.0, 10.0, 5), new PriceBucket(10.0, 99.0, 5)));
+
+		webTestClient.get().uri("/products/id00").exchange().expectStatus().isOk().expectHeader()
+				.contentTypeCompatibleWith(MediaType.APPLICATION_JSON).expectBody().jsonPath("$.name")
+				.isEqualTo("name00");
+		webTestClient.get().uri("/products/stats").exchange().expectStatus().isOk().expectHeader()
+				.contentTypeCompatibleWith(MediaType.APPLICATION_JSON).expectBody().jsonPath("$.count")
+				.isEqualTo(3);
+		webTestClient.get().uri("/products/price-histogram?buckets=2").exchange().expectStatus().isOk()
+				.expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON).expectBody()
+				.jsonPath("$.length()").isEqualTo(2);
+	}
+
+	/**
+	 * This unit test case "test_end_point_get_product_not_modified" tests
+	 * the weak ETag of a versioned product, and the 304 when the client already
+	 * has that version.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_get_product_not_modified() test fails.
+	 */
+	@Test
+	public void test_end_point_get_product_not_modified() throws Exception {
+		ProductDto productDto = new ProductDto("id00", "productNum00", "name00", 10.0, 3L);
+		Mockito.when(productService.getProductById("id00")).thenReturn(Mono.just(productDto));
+
+		webTestClient.get().uri("/products/id00").exchange().expectStatus().isOk().expectHeader()
+				.valueEquals("ETag", "W/\"id00-3\"").expectHeader().valueEquals("Vary", "Accept, Accept-Encoding");
+		webTestClient.get().uri("/products/id00").ifNoneMatch("W/\"id00-3\"").exchange().expectStatus()
+				.isNotModified().expectBody().isEmpty();
+		webTestClient.get().uri("/products/id00").ifNoneMatch("W/\"id00-2\"").exchange().expectStatus().isOk()
+				.expectBody().jsonPath("$.version").isEqualTo(3);
+	}
+
+	/**
+	 * This unit test case "test_end_point_get_all_products_not_modified" tests
+	 * the 304 of an unchanged catalog, without reading the products, and the
+	 * new ETag once the catalog changes.
+	 * 
+	 * @throws Exception The Exception when the test_end_point_get_all_products_not_modified() test fails.
+	 */
+	@Test
+	public void test_end_point_get_all_products_not_modified() throws Exception {
+		String eTag = catalogVersion.get().getETag();
+
+		webTestClient.get().uri("/products").ifNoneMatch(eTag).exchange().expectStatus().isNotModified()
+				.expectHeader().valueEquals("ETag", eTag);
+		webTestClient.get().uri("/products/product_range?min=10.0&max=15.0").ifNoneMatch(eTag).exchange()
+				.expectStatus().isNotModified();
+		Mockito.verify(productService, times(0)).getAllProducts();
+		Mockito.verify(productService, times(0)).getProductInRange(10.0, 15.0);
+
+		ReflectionTestUtils.invokeMethod(catalogVersion, "changed");
+		Mockito.when(productService.getAllProducts()).thenReturn(Flux.empty());
+
+		webTestClient.get().uri("/products").ifNoneMatch(eTag).exchange().expectStatus().isOk().expectHeader()
+				.valueEquals("ETag", catalogVersion.get().getETag());
+		Mockito.verify(productService, times(1)).getAllProducts();
+	}
+
+	private static ProductDto read(ObjectMapper mapper, byte[] body) {
+		try {
+			return mapper.readValue(body, ProductDto.class);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
 	}
 }
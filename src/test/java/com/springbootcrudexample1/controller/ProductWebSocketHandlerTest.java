@@ -0,0 +1,141 @@
+package com.springbootcrudexample1.controller;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.springbootcrudexample1.event.ProductEventPublisher;
+import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.model.ProductEvent;
+
+import reactor.test.StepVerifier;
+
+/**
+ * This class, ProductWebSocketHandlerTest, is the unit-test for the
+ * ProductWebSocketHandler class. It tests the product events pushed to a
+ * connection are filtered on the price range, and dropped for a slow client.
+ * 
+ * @author seanea
+ *
+ */
+public class ProductWebSocketHandlerTest {
+	private ProductEventPublisher events = new ProductEventPublisher();
+	private ProductWebSocketHandler handler = new ProductWebSocketHandler();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(handler, "events", events);
+		ReflectionTestUtils.setField(handler, "bufferSize", 2);
+	}
+
+	/**
+	 * This unit-test case, test_events_in_price_range, tests
+	 * the events() method only pushes the products within the price range,
+	 * and every deletion.
+	 * 
+	 * @throws Exception The Exception when the test_events_in_price_range() test fails.
+	 */
+	@Test
+	void test_events_in_price_range() throws Exception {
+		StepVerifier.create(handler.events(10.0, 20.0, null))
+				.then(() -> {
+					events.publishLocal(new ProductEvent(ProductEvent.CREATED, "id00",
+							new ProductDto("id00", "productNum00", "name00", 5.0)));
+					events.publishLocal(new ProductEvent(ProductEvent.UPDATED, "id01",
+							new ProductDto("id01", "productNum01", "name01", 15.0)));
+					events.publishLocal(new ProductEvent(ProductEvent.DELETED, "id00", null));
+				})
+				.expectNextMatches(e -> e.getId().equals("id01"))
+				.expectNextMatches(e -> e.getType().equals(ProductEvent.DELETED))
+				.thenCancel().verify();
+	}
+
+	/**
+	 * This unit-test case, test_events_out_of_price_range, tests
+	 * the events() method pushes a product updated out of the price range once,
+	 * as an "out-of-range" event.
+	 * 
+	 * @throws Exception The Exception when the test_events_out_of_price_range() test fails.
+	 */
+	@Test
+	void test_events_out_of_price_range() throws Exception {
+		StepVerifier.create(handler.events(10.0, 20.0, null))
+				.then(() -> {
+					events.publishLocal(new ProductEvent(ProductEvent.UPDATED, "id00",
+							new ProductDto("id00", "productNum00", "name00", 15.0)));
+					events.publishLocal(new ProductEvent(ProductEvent.UPDATED, "id00",
+							new ProductDto("id00", "productNum00", "name00", 25.0)));
+					events.publishLocal(new ProductEvent(ProductEvent.UPDATED, "id00",
+							new ProductDto("id00", "productNum00", "name00", 30.0)));
+					events.publishLocal(new ProductEvent(ProductEvent.UPDATED, "id00",
+							new ProductDto("id00", "productNum00", "name00", 12.0)));
+				})
+				.expectNextMatches(e -> e.getType().equals(ProductEvent.UPDATED))
+				.expectNextMatches(e -> e.getType().equals(ProductEvent.OUT_OF_RANGE)
+						&& e.getProduct().getPrice() == 25.0)
+				.expectNextMatches(e -> e.getType().equals(ProductEvent.UPDATED)
+						&& e.getProduct().getPrice() == 12.0)
+				.thenCancel().verify();
+	}
+
+	/**
+	 * This unit-test case, test_slow_client_drops_oldest_events, tests
+	 * the events() method keeps the latest events when the buffer is full.
+	 * 
+	 * @throws Exception The Exception when the test_slow_client_drops_oldest_events() test fails.
+	 */
+	@Test
+	void test_slow_client_drops_oldest_events() throws Exception {
+		StepVerifier.create(handler.events(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, "drop"), 0)
+				.then(() -> {
+					for (int i = 0; i < 5; i++) {
+						events.publishLocal(new ProductEvent(ProductEvent.DELETED, "id0" + i, null));
+					}
+				})
+				.thenRequest(2)
+				.expectNextMatches(e -> e.getId().equals("id03"))
+				.expectNextMatches(e -> e.getId().equals("id04"))
+				.thenCancel().verify();
+	}
+
+	/**
+	 * This unit-test case, test_slow_client_keeps_latest_event_per_product, tests
+	 * the events() method keeps the latest event of each product for a slow
+	 * client, with the "latest" policy.
+	 * 
+	 * @throws Exception The Exception when the test_slow_client_keeps_latest_event_per_product() test fails.
+	 */
+	@Test
+	void test_slow_client_keeps_latest_event_per_product() throws Exception {
+		StepVerifier.create(handler.events(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, "latest"), 0)
+				.then(() -> {
+					for (int i = 0; i < 5; i++) {
+						events.publishLocal(new ProductEvent(ProductEvent.UPDATED, "id00",
+								new ProductDto("id00", "productNum00", "name00", i)));
+					}
+					events.publishLocal(new ProductEvent(ProductEvent.DELETED, "id01", null));
+				})
+				.thenRequest(Long.MAX_VALUE)
+				.expectNextMatches(e -> e.getId().equals("id00") && e.getProduct().getPrice() == 0.0)
+				.expectNextMatches(e -> e.getId().equals("id01"))
+				.expectNextMatches(e -> e.getId().equals("id00") && e.getProduct().getPrice() == 4.0)
+				.expectNoEvent(Duration.ofMillis(100))
+				.thenCancel().verify();
+	}
+
+	/**
+	 * This unit-test case, test_unknown_policy, tests
+	 * the events() method rejects an unknown overflow policy.
+	 * 
+	 * @throws Exception The Exception when the test_unknown_policy() test fails.
+	 */
+	@Test
+	void test_unknown_policy() throws Exception {
+		assertThrows(IllegalArgumentException.class,
+				() -> handler.events(0.0, 1.0, "block"));
+	}
+}
@@ -0,0 +1,60 @@
+package com.springbootcrudexample1.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * This class, ProductMetricsTest, is the unit-test for the ProductMetrics
+ * class. It tests the repository calls are measured with their method and
+ * outcome.
+ * 
+ * @author seanea
+ *
+ */
+public class ProductMetricsTest {
+	private SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private ProductMetrics metrics = new ProductMetrics(registry);
+
+	/**
+	 * This unit-test case, test_time_repository_calls, tests
+	 * the timeRepository() methods record one sample per subscription, tagged
+	 * with the outcome.
+	 * 
+	 * @throws Exception The Exception when the test_time_repository_calls() test fails.
+	 */
+	@Test
+	void test_time_repository_calls() throws Exception {
+		Flux<Integer> call = metrics.timeRepository("streamAll", Flux.just(1, 2, 3));
+
+		StepVerifier.create(call).expectNextCount(3).verifyComplete();
+		StepVerifier.create(call).expectNextCount(3).verifyComplete();
+		StepVerifier.create(metrics.timeRepository("insert", Mono.error(new IllegalStateException())))
+				.expectError(IllegalStateException.class).verify();
+
+		assertEquals(registry.get("products.repository").tags("method", "streamAll", "outcome", "success").timer()
+				.count(), 2L);
+		assertEquals(registry.get("products.repository").tags("method", "insert", "outcome", "error").timer()
+				.count(), 1L);
+	}
+
+	/**
+	 * This unit-test case, test_time_cancelled_repository_call, tests
+	 * the timeRepository() method records a call cancelled by its subscriber.
+	 * 
+	 * @throws Exception The Exception when the test_time_cancelled_repository_call() test fails.
+	 */
+	@Test
+	void test_time_cancelled_repository_call() throws Exception {
+		StepVerifier.create(metrics.timeRepository("streamAll", Flux.range(0, 100)), 1).expectNext(0).thenCancel()
+				.verify();
+
+		assertEquals(registry.get("products.repository").tags("method", "streamAll", "outcome", "cancelled").timer()
+				.count(), 1L);
+	}
+}
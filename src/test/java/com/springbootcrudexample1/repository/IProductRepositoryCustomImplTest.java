@@ -0,0 +1,85 @@
+package com.springbootcrudexample1.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Set;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.springbootcrudexample1.model.Product;
+import com.springbootcrudexample1.model.ProductDto;
+
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+/**
+ * This class, IProductRepositoryCustomImplTest, is the unit-test for the
+ * IProductRepositoryCustomImpl class. It tests the queries sent to MongoDB
+ * by the ReactiveMongoTemplate.
+ * 
+ * @author seanea
+ *
+ */
+public class IProductRepositoryCustomImplTest {
+	private ReactiveMongoTemplate template = Mockito.mock(ReactiveMongoTemplate.class);
+	private IProductRepositoryCustomImpl repository = new IProductRepositoryCustomImpl();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(repository, "template", template);
+		Mockito.when(template.getCollectionName(Product.class)).thenReturn("product");
+		Mockito.when(template.find(Mockito.any(Query.class), Mockito.eq(ProductDto.class), Mockito.eq("product")))
+				.thenReturn(Flux.empty());
+	}
+
+	/**
+	 * This unit-test case, test_product_num_prefix_first_page_query, tests
+	 * the findProductNumPrefixPageAfter() method matches the escaped prefix
+	 * only, for the first page.
+	 * 
+	 * @throws Exception The Exception when the test_product_num_prefix_first_page_query() test fails.
+	 */
+	@Test
+	void test_product_num_prefix_first_page_query() throws Exception {
+		StepVerifier.create(repository.findProductNumPrefixPageAfter("PRD-", null, 10)).verifyComplete();
+
+		Query query = capturedQuery();
+		assertEquals(query.getQueryObject().get("productNum").toString(), "^PRD\\-");
+		assertEquals(query.getSortObject(), new Document("productNum", 1));
+		assertEquals(query.getLimit(), 10);
+	}
+
+	/**
+	 * This unit-test case, test_product_num_prefix_next_page_query, tests
+	 * the findProductNumPrefixPageAfter() method combines the prefix and the
+	 * product number of the previous page with $and, as a top-level $gt is
+	 * rejected by MongoDB.
+	 * 
+	 * @throws Exception The Exception when the test_product_num_prefix_next_page_query() test fails.
+	 */
+	@Test
+	void test_product_num_prefix_next_page_query() throws Exception {
+		StepVerifier.create(repository.findProductNumPrefixPageAfter("PRD-", "PRD-0005", 10)).verifyComplete();
+
+		Document queryObject = capturedQuery().getQueryObject();
+		assertEquals(queryObject.keySet(), Set.of("$and"));
+		List<?> conditions = queryObject.getList("$and", Object.class);
+		assertEquals(conditions.size(), 2);
+		assertEquals(((Document) conditions.get(0)).get("productNum").toString(), "^PRD\\-");
+		assertEquals(conditions.get(1), new Document("productNum", new Document("$gt", "PRD-0005")));
+	}
+
+	private Query capturedQuery() {
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		Mockito.verify(template).find(query.capture(), Mockito.eq(ProductDto.class), Mockito.eq("product"));
+		return query.getValue();
+	}
+}
@@ -0,0 +1,96 @@
+package com.springbootcrudexample1.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.springbootcrudexample1.metrics.ProductMetrics;
+import com.springbootcrudexample1.model.Product;
+import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.repository.IProductRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * This class, ProductBatchLoaderTest, is the unit-test for the
+ * ProductBatchLoader class. It tests the concurrent loads are read with one
+ * query and handed back their own products.
+ * 
+ * @author seanea
+ *
+ */
+@ExtendWith(MockitoExtension.class)
+public class ProductBatchLoaderTest {
+	@Mock
+	private IProductRepository productRepository;
+
+	private ProductBatchLoader batchLoader;
+
+	@BeforeEach
+	void setUp() {
+		batchLoader = new ProductBatchLoader(productRepository, new ProductMetrics(new SimpleMeterRegistry()), 16,
+				Duration.ofMillis(50));
+		batchLoader.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		batchLoader.stop();
+	}
+
+	/**
+	 * This unit-test case, test_concurrent_loads_share_one_query, tests
+	 * the load() method reads the ids requested together with one query, and
+	 * completes the load of a missing product empty.
+	 * 
+	 * @throws Exception The Exception when the test_concurrent_loads_share_one_query() test fails.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	void test_concurrent_loads_share_one_query() throws Exception {
+		// The products are returned in another order than requested.
+		Mockito.when(productRepository.findAllById(Mockito.<Iterable<String>>any())).thenReturn(Flux.just(
+				new Product("id01", "productNum01", "name01", 11.0), new Product("id00", "productNum00", "name00", 10.0)));
+
+		StepVerifier.create(Mono.zip(batchLoader.load("id00"), batchLoader.load("id01"),
+				batchLoader.load("id02").defaultIfEmpty(new ProductDto())))
+				.expectNextMatches(products -> products.getT1().getId().equals("id00")
+						&& products.getT2().getId().equals("id01") && products.getT3().getId() == null)
+				.verifyComplete();
+
+		ArgumentCaptor<Iterable<String>> ids = ArgumentCaptor.forClass(Iterable.class);
+		Mockito.verify(productRepository, Mockito.times(1)).findAllById(ids.capture());
+		assertEquals(ids.getValue(), new LinkedHashSet<>(List.of("id00", "id01", "id02")));
+	}
+
+	/**
+	 * This unit-test case, test_failed_batch_fails_its_loads, tests
+	 * the load() method fails the loads of a failed query, and still reads
+	 * the following ones.
+	 * 
+	 * @throws Exception The Exception when the test_failed_batch_fails_its_loads() test fails.
+	 */
+	@Test
+	void test_failed_batch_fails_its_loads() throws Exception {
+		Mockito.when(productRepository.findAllById(Mockito.<Iterable<String>>any()))
+				.thenReturn(Flux.error(new IllegalStateException("down")))
+				.thenReturn(Flux.just(new Product("id00", "productNum00", "name00", 10.0)));
+
+		StepVerifier.create(batchLoader.load("id00")).expectError(IllegalStateException.class).verify();
+		StepVerifier.create(batchLoader.load("id00")).expectNextCount(1).verifyComplete();
+	}
+}
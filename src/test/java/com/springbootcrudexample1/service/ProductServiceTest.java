@@ -1,18 +1,50 @@
 package com.springbootcrudexample1.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.mongodb.client.result.UpdateResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springbootcrudexample1.cache.ProductCache;
+import com.springbootcrudexample1.cache.ProductPriceIndex;
+import com.springbootcrudexample1.event.ProductEventPublisher;
+import com.springbootcrudexample1.metrics.ProductMetrics;
+import com.springbootcrudexample1.model.BulkItemResult;
+import com.springbootcrudexample1.model.PriceBucket;
+import com.springbootcrudexample1.model.Product;
 import com.springbootcrudexample1.model.ProductDto;
+import com.springbootcrudexample1.model.ProductEvent;
+import com.springbootcrudexample1.model.ProductLookupResult;
+import com.springbootcrudexample1.model.ProductPatch;
+import com.springbootcrudexample1.model.RepriceJob;
+import com.springbootcrudexample1.model.RepriceRequest;
 import com.springbootcrudexample1.repository.IProductRepository;
+import com.springbootcrudexample1.utils.AppUtils;
+import com.springbootcrudexample1.utils.ProductCursor;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 /**
  * This class, ProductServiceTest, is the unit-test for the ProductService class. 
@@ -31,7 +63,39 @@ public class ProductServiceTest {
 	ProductService productService;
 	
 	private ProductDto productDto;
+	private ProductEventPublisher events = new ProductEventPublisher();
+	private ProductBatchLoader batchLoader;
+	private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
 	
+	/**
+	 * The shared product reader, the configuration values, the product
+	 * cache, the batch loader, the event publisher and the metrics are
+	 * normally provided by Spring.
+	 */
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(productService, "productDtoReader", new ObjectMapper().readerFor(ProductDto.class));
+		ReflectionTestUtils.setField(productService, "bulkBatchSize", 2);
+		ReflectionTestUtils.setField(productService, "cursorBatchSize", 16);
+		ReflectionTestUtils.setField(productService, "maxPageLimit", 100);
+		ReflectionTestUtils.setField(productService, "maxMultiGetIds", 3);
+		ReflectionTestUtils.setField(productService, "repriceChunkSize", 2);
+		ReflectionTestUtils.setField(productService, "repriceJobRetention", Duration.ofHours(1));
+		ReflectionTestUtils.setField(productService, "maxHistogramBuckets", 4);
+		ReflectionTestUtils.setField(productService, "productCache", new ProductCache(100, Duration.ofMinutes(1)));
+		ReflectionTestUtils.setField(productService, "events", events);
+		ReflectionTestUtils.setField(productService, "metrics", new ProductMetrics(meterRegistry));
+		batchLoader = new ProductBatchLoader(productRepository, new ProductMetrics(meterRegistry), 16,
+				Duration.ofMillis(1));
+		batchLoader.start();
+		ReflectionTestUtils.setField(productService, "batchLoader", batchLoader);
+	}
+
+	@AfterEach
+	void tearDown() {
+		batchLoader.stop();
+	}
+
 	ProductServiceTest() {
 		productDto = new ProductDto();
 		productDto.setId("id00");
@@ -48,10 +112,14 @@ public class ProductServiceTest {
 	 */
 	@Test
 	void test_get_all_products() throws Exception {
-		// When the method productService.getAllProducts(), of the mocked
-		// object productService, is invoked, it does nothing and simply returns null.
-		Flux<ProductDto> products = productService.getAllProducts();
-		assertEquals(products, null);
+		// When the method productRepository.streamAll(), of the mocked
+		// object productRepository, is invoked, it simply returns the product.
+		Mockito.when(productRepository.streamAll(16)).thenReturn(Flux.just(productDto));
+
+		StepVerifier.create(productService.getAllProducts())
+				.expectNextMatches(p -> p.toString().equals(productDto.toString())).verifyComplete();
+		// The products are read with a single query, with the configured cursor batch size.
+		Mockito.verify(productRepository, Mockito.times(1)).streamAll(16);
 	}
 	
 	/**
@@ -62,11 +130,17 @@ public class ProductServiceTest {
 	 */
 	@Test
 	void test_get_a_product_of_a_given_id() throws Exception {
-		// When the method productService.getProductById(), of the mocked
-		// object productService, is invoked, it does nothing and simply returns null.
-		Mono<ProductDto> products = productService.getProductById("id00");
-		assertEquals(products, null);
+		// When the method productRepository.findAllById(), of the mocked
+		// object productRepository, is invoked, it simply returns the product.
+		Mockito.when(productRepository.findAllById(Mockito.<Iterable<String>>any()))
+				.thenReturn(Flux.just(AppUtils.dtoToEntity(productDto)));
+
+		StepVerifier.create(productService.getProductById("id00"))
+				.expectNextMatches(p -> p.toString().equals(productDto.toString())).verifyComplete();
+		// The product is read with a single query.
+		Mockito.verify(productRepository, Mockito.times(1)).findAllById(Mockito.<Iterable<String>>any());
 	}
+
 	/**
 	 * This unit-test case, test_get_products_in_range, tests
 	 * the getProductInRange() method.
@@ -75,10 +149,13 @@ public class ProductServiceTest {
 	 */
 	@Test
 	void test_get_products_in_range() throws Exception {
-		// When the method productService.getProductInRange(), of the mocked
-		// object productService, is invoked, it does nothing and simply returns null.
-		Flux<ProductDto> products = productService.getProductInRange(10.0, 20.0);
-		assertEquals(products, null);
+		// When the method productRepository.streamByPriceBetween(), of the mocked
+		// object productRepository, is invoked, it simply returns the product.
+		Mockito.when(productRepository.streamByPriceBetween(10.0, 20.0, 16)).thenReturn(Flux.just(productDto));
+
+		StepVerifier.create(productService.getProductInRange(10.0, 20.0))
+				.expectNextMatches(p -> p.toString().equals(productDto.toString())).verifyComplete();
+		Mockito.verify(productRepository, Mockito.times(1)).streamByPriceBetween(10.0, 20.0, 16);
 	}
 
 	/**
@@ -90,10 +167,28 @@ public class ProductServiceTest {
 	@Test
 	void test_save_a_product_dto() throws Exception {
 		String jsonStringProductDto = "{\"id\":\"id00\",\"productNum\":\"productNum00\",\"name\":\"name00\",\"price\":10.0}";
-		// When the method productService.saveProduct(), of the mocked
-		// object productService, is invoked, it does nothing and simply returns null.
-		Mono<ProductDto> savedUser = productService.saveProduct(jsonStringProductDto);
-		assertNotNull(savedUser);
+		// When the method productRepository.insert(), of the mocked
+		// object productRepository, is invoked, it simply returns the given product.
+		Mockito.when(productRepository.insert(Mockito.any(Product.class)))
+				.thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+		StepVerifier.create(productService.saveProduct(jsonStringProductDto))
+				.expectNextMatches(p -> p.toString().equals(productDto.toString())).verifyComplete();
+	}
+
+	/**
+	 * This unit-test case, test_save_an_invalid_json_string, tests
+	 * the saveProduct() method with a malformed JSON string.
+	 * 
+	 * @throws Exception The Exception when the test_save_an_invalid_json_string() test fails.
+	 */
+	@Test
+	void test_save_an_invalid_json_string() throws Exception {
+		StepVerifier.create(productService.saveProduct("{\"id\":")).expectError(JsonProcessingException.class)
+				.verify();
+		Mockito.verifyNoInteractions(productRepository);
+		assertEquals(meterRegistry.get("products.json.parse.failures").tag("operation", "save").counter().count(),
+				1.0);
 	}
 	
 	/**
@@ -106,12 +201,70 @@ public class ProductServiceTest {
 	void test_update_a_product_of_a_given_id() throws Exception {
 		String jsonStringProductDto = "{\"id\":\"id00\",\"productNum\":\"productNum00\",\"name\":\"name00\",\"price\":10.0}";
 		
-		// When the method productService.updateProduct(), of the mocked
-		// object productService, is invoked, it does nothing and simply returns null.
-		Mono<ProductDto> products = productService.updateProduct(jsonStringProductDto);
-		assertEquals(products, null);
+		// When the method productRepository.replaceIfExists(), of the mocked
+		// object productRepository, is invoked, it simply returns the product.
+		Mockito.when(productRepository.replaceIfExists(Mockito.any(Product.class)))
+				.thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+		StepVerifier.create(productService.updateProduct(jsonStringProductDto))
+				.expectNextMatches(p -> p.toString().equals(productDto.toString())).verifyComplete();
+		// The update is a single write, without a read before it.
+		Mockito.verify(productRepository, Mockito.times(1)).replaceIfExists(Mockito.any(Product.class));
+		Mockito.verify(productRepository, Mockito.never()).findById(Mockito.anyString());
+		Mockito.verify(productRepository, Mockito.never()).save(Mockito.any(Product.class));
+	}
+	
+	/**
+	 * This unit-test case, test_update_a_missing_product, tests
+	 * the updateProduct() method when no product has the id.
+	 * 
+	 * @throws Exception The Exception when the test_update_a_missing_product() test fails.
+	 */
+	@Test
+	void test_update_a_missing_product() throws Exception {
+		Mockito.when(productRepository.replaceIfExists(Mockito.any(Product.class))).thenReturn(Mono.empty());
+
+		StepVerifier.create(productService.updateProduct(Mono.just(productDto))).verifyComplete();
+		Mockito.verify(productRepository, Mockito.times(1)).replaceIfExists(Mockito.any(Product.class));
+		// Without a version, a missing product is not looked up.
+		Mockito.verify(productRepository, Mockito.never()).existsById(Mockito.anyString());
 	}
 	
+	/**
+	 * This unit-test case, test_update_an_outdated_version, tests
+	 * the updateProduct() method fails when the product has another version,
+	 * and that only then the product is looked up.
+	 * 
+	 * @throws Exception The Exception when the test_update_an_outdated_version() test fails.
+	 */
+	@Test
+	void test_update_an_outdated_version() throws Exception {
+		ProductDto outdated = new ProductDto("id00", "productNum00", "name00", 10.0, 3L);
+		Mockito.when(productRepository.replaceIfExists(Mockito.any(Product.class))).thenReturn(Mono.empty());
+		Mockito.when(productRepository.existsById("id00")).thenReturn(Mono.just(true));
+
+		StepVerifier.create(productService.updateProduct(Mono.just(outdated)))
+				.expectError(ProductConflictException.class).verify();
+		// The version is part of the conditional write.
+		Mockito.verify(productRepository, Mockito.times(1))
+				.replaceIfExists(Mockito.argThat(product -> Long.valueOf(3L).equals(product.getVersion())));
+	}
+
+	/**
+	 * This unit-test case, test_update_a_missing_product_with_version, tests
+	 * the updateProduct() method completes empty when no product has the id.
+	 * 
+	 * @throws Exception The Exception when the test_update_a_missing_product_with_version() test fails.
+	 */
+	@Test
+	void test_update_a_missing_product_with_version() throws Exception {
+		Mockito.when(productRepository.replaceIfExists(Mockito.any(Product.class))).thenReturn(Mono.empty());
+		Mockito.when(productRepository.existsById("id00")).thenReturn(Mono.just(false));
+
+		StepVerifier.create(productService.updateProduct(Mono.just(new ProductDto("id00", null, null, 1.0, 0L))))
+				.verifyComplete();
+	}
+
 	/**
 	 * This unit-test case, test_delete_a_product_of_a_given_id, tests
 	 * the deleteProduct() method.
@@ -120,9 +273,528 @@ public class ProductServiceTest {
 	 */
 	@Test
 	void test_delete_a_product_of_a_given_id() throws Exception {
-		// When the method productService.deleteProduct(), of the mocked
-		// object productService, is invoked, it does nothing and simply returns null.
-		Mono<Void> products = productService.deleteProduct("id00");
-		assertEquals(products, null);
+		String jsonStringProductDto = "{\"id\":\"id00\",\"productNum\":\"productNum00\",\"name\":\"name00\",\"price\":10.0}";
+		// When the method productRepository.removeById(), of the mocked
+		// object productRepository, is invoked, it reports the product as removed.
+		Mockito.when(productRepository.removeById("id00")).thenReturn(Mono.just(true));
+
+		StepVerifier.create(productService.deleteProduct(jsonStringProductDto)).expectNext(true).verifyComplete();
+		// The delete is a single write, without a read before it.
+		Mockito.verify(productRepository, Mockito.times(1)).removeById("id00");
+		Mockito.verify(productRepository, Mockito.never()).findById(Mockito.anyString());
+		Mockito.verify(productRepository, Mockito.never()).deleteById(Mockito.anyString());
+	}
+
+	/**
+	 * This unit-test case, test_save_products_in_batches, tests
+	 * the saveProducts() method writes one bulkWrite per batch.
+	 * 
+	 * @throws Exception The Exception when the test_save_products_in_batches() test fails.
+	 */
+	@Test
+	void test_save_products_in_batches() throws Exception {
+		// When the method productRepository.bulkWrite(), of the mocked object 
+		// productRepository, is invoked, it reports every product as inserted.
+		Mockito.when(productRepository.bulkWrite(Mockito.anyList(), Mockito.anyLong(), Mockito.eq(true)))
+				.thenAnswer(invocation -> {
+					List<Product> products = invocation.getArgument(0);
+					long offset = invocation.getArgument(1);
+					return Flux.range(0, products.size())
+							.map(i -> new BulkItemResult(offset + i, "id0" + (offset + i), BulkItemResult.INSERTED, null));
+				});
+
+		StepVerifier.create(productService.saveProducts(Flux.just(productDto, productDto, productDto), true))
+				.expectNextMatches(r -> r.getIndex() == 0).expectNextMatches(r -> r.getIndex() == 1)
+				.expectNextMatches(r -> r.getIndex() == 2).verifyComplete();
+		// Three products in batches of two are two bulk writes.
+		Mockito.verify(productRepository, Mockito.times(2)).bulkWrite(Mockito.anyList(), Mockito.anyLong(),
+				Mockito.eq(true));
+	}
+
+	/**
+	 * This unit-test case, test_save_products_ordered_stops_after_failure, tests
+	 * the saveProducts() method skips the batches after a failed ordered write.
+	 * 
+	 * @throws Exception The Exception when the test_save_products_ordered_stops_after_failure() test fails.
+	 */
+	@Test
+	void test_save_products_ordered_stops_after_failure() throws Exception {
+		Mockito.when(productRepository.bulkWrite(Mockito.anyList(), Mockito.eq(0L), Mockito.eq(true)))
+				.thenReturn(Flux.just(new BulkItemResult(0, "id00", BulkItemResult.INSERTED, null),
+						new BulkItemResult(1, "id00", BulkItemResult.FAILED, "E11000 duplicate key")));
+
+		StepVerifier.create(productService.saveProducts(Flux.just(productDto, productDto, productDto), true))
+				.expectNextMatches(r -> BulkItemResult.INSERTED.equals(r.getStatus()))
+				.expectNextMatches(r -> BulkItemResult.FAILED.equals(r.getStatus()))
+				.expectNextMatches(r -> r.getIndex() == 2 && BulkItemResult.SKIPPED.equals(r.getStatus()))
+				.verifyComplete();
+		Mockito.verify(productRepository, Mockito.times(1)).bulkWrite(Mockito.anyList(), Mockito.anyLong(),
+				Mockito.anyBoolean());
+	}
+
+	/**
+	 * This unit-test case, test_save_products_publishes_only_written, tests
+	 * the saveProducts() method publishes the written products only, not the
+	 * ones skipped after a failure of the same ordered batch.
+	 * 
+	 * @throws Exception The Exception when the test_save_products_publishes_only_written() test fails.
+	 */
+	@Test
+	void test_save_products_publishes_only_written() throws Exception {
+		ReflectionTestUtils.setField(productService, "bulkBatchSize", 3);
+		Mockito.when(productRepository.bulkWrite(Mockito.anyList(), Mockito.eq(0L), Mockito.eq(true)))
+				.thenReturn(Flux.just(new BulkItemResult(0, "id00", BulkItemResult.INSERTED, null),
+						new BulkItemResult(1, "id01", BulkItemResult.FAILED, "E11000 duplicate key"),
+						new BulkItemResult(2, "id02", BulkItemResult.SKIPPED, null)));
+		List<ProductEvent> published = new ArrayList<>();
+		Disposable subscription = events.events().subscribe(published::add);
+
+		StepVerifier.create(productService.saveProducts(Flux.just(productDto, productDto, productDto), true))
+				.expectNextCount(3).verifyComplete();
+		subscription.dispose();
+
+		assertEquals(published.size(), 1);
+		assertEquals(published.get(0).getId(), "id00");
+		assertEquals(published.get(0).getType(), ProductEvent.CREATED);
+	}
+
+	/**
+	 * This unit-test case, test_get_products_page, tests
+	 * the getProductsPage() method returns the cursor of the next page.
+	 * 
+	 * @throws Exception The Exception when the test_get_products_page() test fails.
+	 */
+	@Test
+	void test_get_products_page() throws Exception {
+		ProductDto productDto_01 = new ProductDto("id01", "productNum01", "name01", 11.0);
+		ProductDto productDto_02 = new ProductDto("id02", "productNum02", "name02", 12.0);
+
+		// One more product than the limit is read, to know there is a next page.
+		Mockito.when(productRepository.findPageAfter("id00", 2)).thenReturn(Flux.just(productDto_01, productDto_02));
+
+		StepVerifier.create(productService.getProductsPage(ProductCursor.encodeId(productDto), 1))
+				.expectNextMatches(page -> page.getItems().size() == 1 && page.getItems().get(0).getId().equals("id01")
+						&& ProductCursor.decodeId(page.getNext()).getId().equals("id01"))
+				.verifyComplete();
+	}
+
+	/**
+	 * This unit-test case, test_get_products_in_range_last_page, tests
+	 * the getProductInRangePage() method returns no cursor on the last page.
+	 * 
+	 * @throws Exception The Exception when the test_get_products_in_range_last_page() test fails.
+	 */
+	@Test
+	void test_get_products_in_range_last_page() throws Exception {
+		Mockito.when(productRepository.findPriceRangePageAfter(10.0, 20.0, null, null, 101))
+				.thenReturn(Flux.just(productDto));
+
+		// The limit is capped at the maximum page limit.
+		StepVerifier.create(productService.getProductInRangePage(10.0, 20.0, null, 5000))
+				.expectNextMatches(page -> page.getItems().size() == 1 && page.getNext() == null).verifyComplete();
+	}
+
+	/**
+	 * This unit-test case, test_get_products_page_with_invalid_cursor, tests
+	 * the getProductsPage() method rejects a malformed cursor.
+	 * 
+	 * @throws Exception The Exception when the test_get_products_page_with_invalid_cursor() test fails.
+	 */
+	@Test
+	void test_get_products_page_with_invalid_cursor() throws Exception {
+		StepVerifier.create(productService.getProductsPage("not a cursor", 10))
+				.expectError(IllegalArgumentException.class).verify();
+		Mockito.verifyNoInteractions(productRepository);
+	}
+
+	/**
+	 * This unit-test case, test_get_product_fields_in_range, tests
+	 * the getProductInRange() method with projected fields.
+	 * 
+	 * @throws Exception The Exception when the test_get_product_fields_in_range() test fails.
+	 */
+	@Test
+	void test_get_product_fields_in_range() throws Exception {
+		// Only the requested document fields are read, id being the _id.
+		Mockito.when(productRepository.streamFieldsByPriceBetween(10.0, 20.0, Set.of("_id", "price"), 16))
+				.thenReturn(Flux.just(new Document("_id", "id00").append("price", 10.0)));
+
+		StepVerifier.create(productService.getProductInRange(10.0, 20.0, List.of("id", "price")))
+				.expectNextMatches(fields -> fields.get("id").equals("id00") && fields.get("price").equals(10.0)
+						&& fields.size() == 2)
+				.verifyComplete();
+	}
+
+	/**
+	 * This unit-test case, test_get_unknown_product_fields_in_range, tests
+	 * the getProductInRange() method rejects an unknown field.
+	 * 
+	 * @throws Exception The Exception when the test_get_unknown_product_fields_in_range() test fails.
+	 */
+	@Test
+	void test_get_unknown_product_fields_in_range() throws Exception {
+		StepVerifier.create(productService.getProductInRange(10.0, 20.0, List.of("price", "secret")))
+				.expectError(IllegalArgumentException.class).verify();
+		Mockito.verifyNoInteractions(productRepository);
+	}
+
+	/**
+	 * This unit-test case, test_get_a_cached_product, tests
+	 * the getProductById() method reads a product once, then from the cache.
+	 * 
+	 * @throws Exception The Exception when the test_get_a_cached_product() test fails.
+	 */
+	@Test
+	void test_get_a_cached_product() throws Exception {
+		Mockito.when(productRepository.findAllById(Mockito.<Iterable<String>>any()))
+				.thenReturn(Flux.just(AppUtils.dtoToEntity(productDto)));
+
+		StepVerifier.create(productService.getProductById("id00")).expectNextCount(1).verifyComplete();
+		StepVerifier.create(productService.getProductById("id00")).expectNextCount(1).verifyComplete();
+		Mockito.verify(productRepository, Mockito.times(1)).findAllById(Mockito.<Iterable<String>>any());
+	}
+
+	/**
+	 * This unit-test case, test_update_refreshes_the_cache, tests
+	 * the updateProduct() method puts the updated product in the cache, and
+	 * the deleteProduct() method removes it.
+	 * 
+	 * @throws Exception The Exception when the test_update_refreshes_the_cache() test fails.
+	 */
+	@Test
+	void test_update_refreshes_the_cache() throws Exception {
+		ProductDto updated = new ProductDto("id00", "productNum00", "name01", 12.0);
+		Mockito.when(productRepository.replaceIfExists(Mockito.any(Product.class)))
+				.thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+		Mockito.when(productRepository.removeById("id00")).thenReturn(Mono.just(true));
+		Mockito.when(productRepository.findAllById(Mockito.<Iterable<String>>any())).thenReturn(Flux.empty());
+
+		StepVerifier.create(productService.updateProduct(Mono.just(updated))).expectNextCount(1).verifyComplete();
+		// The updated product is served from the cache.
+		StepVerifier.create(productService.getProductById("id00"))
+				.expectNextMatches(p -> p.getName().equals("name01")).verifyComplete();
+		Mockito.verify(productRepository, Mockito.never()).findAllById(Mockito.<Iterable<String>>any());
+
+		StepVerifier.create(productService.deleteProduct(Mono.just(updated))).expectNext(true).verifyComplete();
+		// The removed product is read again, and no longer exists.
+		StepVerifier.create(productService.getProductById("id00")).verifyComplete();
+		Mockito.verify(productRepository, Mockito.times(1)).findAllById(Mockito.<Iterable<String>>any());
+	}
+
+	/**
+	 * This unit-test case, test_save_publishes_a_product_event, tests
+	 * the saveProduct() method publishes the saved product.
+	 * 
+	 * @throws Exception The Exception when the test_save_publishes_a_product_event() test fails.
+	 */
+	@Test
+	void test_save_publishes_a_product_event() throws Exception {
+		Mockito.when(productRepository.insert(Mockito.any(Product.class)))
+				.thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+		StepVerifier.create(events.events().next())
+				.then(() -> productService.saveProduct(Mono.just(productDto)).subscribe())
+				.expectNextMatches(e -> e.getType().equals(ProductEvent.CREATED) && e.getId().equals("id00"))
+				.verifyComplete();
+	}
+
+	/**
+	 * This unit-test case, test_get_products_by_ids, tests
+	 * the getProductsByIds() method reads the ids with one query, follows
+	 * their order and reports the missing ones.
+	 * 
+	 * @throws Exception The Exception when the test_get_products_by_ids() test fails.
+	 */
+	@Test
+	void test_get_products_by_ids() throws Exception {
+		Mockito.when(productRepository.findAllById(Mockito.<Iterable<String>>any()))
+				.thenReturn(Flux.just(AppUtils.dtoToEntity(productDto)));
+
+		StepVerifier.create(productService.getProductsByIds(List.of("id01", "id00", "id01")))
+				.expectNextMatches(r -> r.getId().equals("id01") && r.getStatus().equals(ProductLookupResult.MISSING))
+				.expectNextMatches(r -> r.getStatus().equals(ProductLookupResult.FOUND)
+						&& r.getProduct().toString().equals(productDto.toString()))
+				.expectNextMatches(r -> r.getId().equals("id01") && r.getProduct() == null)
+				.verifyComplete();
+		// The repeated id is read once.
+		Mockito.verify(productRepository, Mockito.times(1)).findAllById(Set.of("id01", "id00"));
+	}
+
+	/**
+	 * This unit-test case, test_get_too_many_products_by_ids, tests
+	 * the getProductsByIds() method rejects more than the maximum ids.
+	 * 
+	 * @throws Exception The Exception when the test_get_too_many_products_by_ids() test fails.
+	 */
+	@Test
+	void test_get_too_many_products_by_ids() throws Exception {
+		StepVerifier.create(productService.getProductsByIds(List.of("id00", "id01", "id02", "id03")))
+				.expectError(IllegalArgumentException.class).verify();
+		Mockito.verifyNoInteractions(productRepository);
+	}
+
+	/**
+	 * This unit-test case, test_patch_a_product, tests
+	 * the patchProduct() method sets only the given fields, and removes the
+	 * null ones.
+	 * 
+	 * @throws Exception The Exception when the test_patch_a_product() test fails.
+	 */
+	@Test
+	void test_patch_a_product() throws Exception {
+		Map<String, Object> mergePatch = new LinkedHashMap<>();
+		mergePatch.put("price", 12);
+		mergePatch.put("name", null);
+		Mockito.when(productRepository.patchIfExists(Mockito.any(ProductPatch.class)))
+				.thenReturn(Mono.just(new Product("id00", "productNum00", null, 12.0, 1L)));
+
+		StepVerifier.create(productService.patchProduct("id00", Mono.just(mergePatch)))
+				.expectNextMatches(p -> p.getPrice() == 12.0 && p.getVersion() == 1L).verifyComplete();
+		Mockito.verify(productRepository, Mockito.times(1)).patchIfExists(
+				new ProductPatch("id00", Map.of("price", 12.0), Set.of("name"), null));
+	}
+
+	/**
+	 * This unit-test case, test_patch_an_unknown_field, tests
+	 * the patchProduct() method rejects a field which is not a product field.
+	 * 
+	 * @throws Exception The Exception when the test_patch_an_unknown_field() test fails.
+	 */
+	@Test
+	void test_patch_an_unknown_field() throws Exception {
+		StepVerifier.create(productService.patchProduct("id00", Mono.just(Map.of("colour", "red"))))
+				.expectError(IllegalArgumentException.class).verify();
+		Mockito.verifyNoInteractions(productRepository);
+	}
+
+	/**
+	 * This unit-test case, test_patch_products_in_batches, tests
+	 * the patchProducts() method writes one bulk patch per batch, and
+	 * publishes the patched products read back.
+	 * 
+	 * @throws Exception The Exception when the test_patch_products_in_batches() test fails.
+	 */
+	@Test
+	void test_patch_products_in_batches() throws Exception {
+		Mockito.when(productRepository.bulkPatch(Mockito.anyList(), Mockito.anyLong(), Mockito.eq(true)))
+				.thenAnswer(invocation -> {
+					List<ProductPatch> patches = invocation.getArgument(0);
+					long offset = invocation.getArgument(1);
+					return Flux.range(0, patches.size()).map(i -> new BulkItemResult(offset + i,
+							patches.get(i).getId(), BulkItemResult.PATCHED, null));
+				});
+		Mockito.when(productRepository.findAllById(Mockito.<Iterable<String>>any())).thenAnswer(invocation -> {
+			Iterable<String> ids = invocation.getArgument(0);
+			return Flux.fromIterable(ids).map(id -> new Product(id, "productNum00", "name00", 5.0, 1L));
+		});
+		List<ProductEvent> published = new ArrayList<>();
+		Disposable subscription = events.events().subscribe(published::add);
+
+		StepVerifier.create(productService.patchProducts(Flux.just(Map.of("id", "id00", "price", 1.0),
+				Map.of("id", "id01", "price", 2.0), Map.of("id", "id02", "price", 3.0)), true))
+				.expectNextMatches(r -> r.getId().equals("id00")).expectNextMatches(r -> r.getId().equals("id01"))
+				.expectNextMatches(r -> r.getIndex() == 2 && r.getStatus().equals(BulkItemResult.PATCHED))
+				.verifyComplete();
+		subscription.dispose();
+		// Three patches in batches of two are two bulk writes.
+		Mockito.verify(productRepository, Mockito.times(2)).bulkPatch(Mockito.anyList(), Mockito.anyLong(),
+				Mockito.eq(true));
+		// Each patched product is published as read back.
+		assertEquals(published.size(), 3);
+		assertEquals(published.get(2).getType(), ProductEvent.UPDATED);
+		assertEquals(published.get(2).getProduct().getVersion(), 1L);
+	}
+
+	/**
+	 * This unit-test case, test_reprice_products_in_chunks, tests
+	 * the startReprice() method reprices the id buckets of the range one
+	 * after the other, and records the progress of the job.
+	 * 
+	 * @throws Exception The Exception when the test_reprice_products_in_chunks() test fails.
+	 */
+	@Test
+	void test_reprice_products_in_chunks() throws Exception {
+		RepriceRequest request = new RepriceRequest(10.0, 100.0, 1.05, 0.0, 2);
+		Mockito.when(productRepository.countInPriceRange(10.0, 100.0)).thenReturn(Mono.just(3L));
+		// Three products in chunks of two are two buckets.
+		Mockito.when(productRepository.idBucketsInPriceRange(10.0, 100.0, 2)).thenReturn(Flux.just(
+				new Document("_id", new Document("min", "id00").append("max", "id02")).append("count", 2),
+				new Document("_id", new Document("min", "id02").append("max", "id02")).append("count", 1)));
+		Mockito.when(productRepository.repriceIdRange(Mockito.eq(request), Mockito.any(), Mockito.any(),
+				Mockito.anyBoolean())).thenReturn(Mono.just(UpdateResult.acknowledged(2, 2L, null)),
+						Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+		List<ProductEvent> published = new ArrayList<>();
+		Disposable subscription = events.events().subscribe(published::add);
+
+		RepriceJob job = productService.startReprice(request).block();
+
+		StepVerifier.create(productService.getRepriceJob(job.getId()))
+				.expectNextMatches(j -> j.getStatus().equals(RepriceJob.COMPLETED) && j.getTotal() == 3
+						&& j.getChunksDone() == 2 && j.getModified() == 3 && j.getFinishedAt() != null)
+				.verifyComplete();
+		subscription.dispose();
+		// The job tells once, when it finishes, the products have to be read again.
+		assertEquals(published.size(), 1);
+		assertEquals(published.get(0).getType(), ProductEvent.RELOADED);
+		// Only the last bucket includes its upper bound.
+		Mockito.verify(productRepository, Mockito.times(1)).repriceIdRange(request, "id00", "id02", false);
+		Mockito.verify(productRepository, Mockito.times(1)).repriceIdRange(request, "id02", "id02", true);
+	}
+
+	/**
+	 * This unit-test case, test_reprice_failed_job_reloads_once, tests
+	 * the startReprice() method still tells once the products have to be read
+	 * again when a job fails after modifying products.
+	 * 
+	 * @throws Exception The Exception when the test_reprice_failed_job_reloads_once() test fails.
+	 */
+	@Test
+	void test_reprice_failed_job_reloads_once() throws Exception {
+		RepriceRequest request = new RepriceRequest(10.0, 100.0, 1.05, 0.0, 2);
+		Mockito.when(productRepository.countInPriceRange(10.0, 100.0)).thenReturn(Mono.just(3L));
+		Mockito.when(productRepository.idBucketsInPriceRange(10.0, 100.0, 2)).thenReturn(Flux.just(
+				new Document("_id", new Document("min", "id00").append("max", "id02")).append("count", 2),
+				new Document("_id", new Document("min", "id02").append("max", "id02")).append("count", 1)));
+		Mockito.when(productRepository.repriceIdRange(Mockito.eq(request), Mockito.any(), Mockito.any(),
+				Mockito.anyBoolean())).thenReturn(Mono.just(UpdateResult.acknowledged(2, 2L, null)),
+						Mono.error(new IllegalStateException("interrupted")));
+
+		List<ProductEvent> published = new ArrayList<>();
+		Disposable subscription = events.events().subscribe(published::add);
+
+		RepriceJob job = productService.startReprice(request).block();
+
+		StepVerifier.create(productService.getRepriceJob(job.getId()))
+				.expectNextMatches(j -> j.getStatus().equals(RepriceJob.FAILED) && j.getChunksDone() == 1
+						&& j.getModified() == 2 && j.getError().equals("interrupted"))
+				.verifyComplete();
+		subscription.dispose();
+		assertEquals(published.size(), 1);
+		assertEquals(published.get(0).getType(), ProductEvent.RELOADED);
+	}
+
+	/**
+	 * This unit-test case, test_reprice_job_evicted_after_retention, tests
+	 * the getRepriceJob() method no longer finds a job once it has been
+	 * finished for the retention.
+	 * 
+	 * @throws Exception The Exception when the test_reprice_job_evicted_after_retention() test fails.
+	 */
+	@Test
+	void test_reprice_job_evicted_after_retention() throws Exception {
+		ReflectionTestUtils.setField(productService, "repriceJobRetention", Duration.ZERO);
+		Mockito.when(productRepository.countInPriceRange(10.0, 100.0)).thenReturn(Mono.just(0L));
+
+		RepriceJob job = productService.startReprice(new RepriceRequest(10.0, 100.0, 1.05, 0.0, 2)).block();
+
+		assertEquals(job.getStatus(), RepriceJob.COMPLETED);
+		StepVerifier.create(productService.getRepriceJob(job.getId())).verifyComplete();
+	}
+
+	/**
+	 * This unit-test case, test_reprice_an_invalid_range, tests
+	 * the startReprice() method rejects a range whose minimum is greater than
+	 * its maximum.
+	 * 
+	 * @throws Exception The Exception when the test_reprice_an_invalid_range() test fails.
+	 */
+	@Test
+	void test_reprice_an_invalid_range() throws Exception {
+		StepVerifier.create(productService.startReprice(new RepriceRequest(100.0, 10.0, 1.05, 0.0, 2)))
+				.expectError(IllegalArgumentException.class).verify();
+		Mockito.verifyNoInteractions(productRepository);
+	}
+
+	/**
+	 * This unit-test case, test_get_price_stats_of_no_product, tests
+	 * the getPriceStats() method returns a count of 0 when the aggregation has
+	 * no result, an empty collection.
+	 * 
+	 * @throws Exception The Exception when the test_get_price_stats_of_no_product() test fails.
+	 */
+	@Test
+	void test_get_price_stats_of_no_product() throws Exception {
+		Mockito.when(productRepository.priceStats()).thenReturn(Mono.empty());
+
+		StepVerifier.create(productService.getPriceStats())
+				.expectNextMatches(stats -> stats.getCount() == 0 && stats.getAvg() == null).verifyComplete();
+	}
+
+	/**
+	 * This unit-test case, test_get_price_histogram, tests
+	 * the getPriceHistogram() method returns the buckets of the aggregation,
+	 * and rejects a number of buckets above "products.histogram.max-buckets".
+	 * 
+	 * @throws Exception The Exception when the test_get_price_histogram() test fails.
+	 */
+	@Test
+	void test_get_price_histogram() throws Exception {
+		Mockito.when(productRepository.priceHistogram(2))
+				.thenReturn(Flux.just(new PriceBucket(1.0, 10.0, 5), new PriceBucket(10.0, 99.0, 5)));
+
+		StepVerifier.create(productService.getPriceHistogram(2)).expectNext(new PriceBucket(1.0, 10.0, 5))
+				.expectNext(new PriceBucket(10.0, 99.0, 5)).verifyComplete();
+		StepVerifier.create(productService.getPriceHistogram(5)).expectError(IllegalArgumentException.class)
+				.verify();
+		Mockito.verify(productRepository, Mockito.never()).priceHistogram(5);
+	}
+
+	/**
+	 * This unit-test case, test_search_by_name, tests
+	 * the searchByName() method returns the products of the text search, and
+	 * the score and id cursor of the last one when there is a next page.
+	 * 
+	 * @throws Exception The Exception when the test_search_by_name() test fails.
+	 */
+	@Test
+	void test_search_by_name() throws Exception {
+		Mockito.when(productRepository.searchNamePageAfter("water bottle", null, null, 2)).thenReturn(Flux.just(
+				new Document("_id", "id00").append("name", "Water bottle").append("price", 10.0).append("score", 1.5),
+				new Document("_id", "id01").append("name", "Bottle").append("price", 20.0).append("score", 0.75)));
+
+		StepVerifier.create(productService.searchByName("water bottle", null, 1)).expectNextMatches(page -> {
+			ProductCursor cursor = ProductCursor.decodeScoreId(page.getNext());
+			return page.getItems().size() == 1 && page.getItems().get(0).getName().equals("Water bottle")
+					&& cursor.getScore() == 1.5 && cursor.getId().equals("id00");
+		}).verifyComplete();
+		StepVerifier.create(productService.searchByName(" ", null, 1)).expectError(IllegalArgumentException.class)
+				.verify();
+	}
+
+	/**
+	 * This unit-test case, test_search_by_product_num_prefix, tests
+	 * the searchByProductNumPrefix() method passes the product number cursor
+	 * to the repository and ends on the last page.
+	 * 
+	 * @throws Exception The Exception when the test_search_by_product_num_prefix() test fails.
+	 */
+	@Test
+	void test_search_by_product_num_prefix() throws Exception {
+		String after = ProductCursor.encodeProductNum(new ProductDto("id00", "PRD-00", "name00", 10.0));
+		Mockito.when(productRepository.findProductNumPrefixPageAfter("PRD-", "PRD-00", 3))
+				.thenReturn(Flux.just(new ProductDto("id01", "PRD-01", "name01", 10.0)));
+
+		StepVerifier.create(productService.searchByProductNumPrefix("PRD-", after, 2))
+				.expectNextMatches(page -> page.getItems().size() == 1 && page.getNext() == null).verifyComplete();
+	}
+
+	/**
+	 * This unit-test case, test_get_product_in_range_from_price_index, tests
+	 * the getProductInRange() method reads the loaded price index instead of
+	 * the repository.
+	 * 
+	 * @throws Exception The Exception when the test_get_product_in_range_from_price_index() test fails.
+	 */
+	@Test
+	void test_get_product_in_range_from_price_index() throws Exception {
+		ProductPriceIndex priceIndex = new ProductPriceIndex();
+		priceIndex.build(List.of(new ProductDto("id00", "productNum00", "name00", 10.0),
+				new ProductDto("id01", "productNum01", "name01", 50.0)));
+		ReflectionTestUtils.setField(productService, "priceIndex", priceIndex);
+
+		StepVerifier.create(productService.getProductInRange(0.0, 20.0)).expectNextMatches(p -> p.getId().equals("id00"))
+				.verifyComplete();
+		Mockito.verifyNoInteractions(productRepository);
 	}
 }
@@ -2,6 +2,10 @@ package com.springbootcrudexample1.utils;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.Map;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.Test;
 
 import com.springbootcrudexample1.model.Product;
@@ -66,4 +70,50 @@ public class AppUtilsTest {
 		assertEquals(productDto.getPrice(), product.getPrice());
 		assertEquals(productDto.toString(), product.toString());
 	}
+
+	/**
+	 * This unit-test case, test_conversion_of_document_to_fields, tests
+	 * the documentToFields() method.
+	 * 
+	 * @throws Exception The Exception when the test_conversion_of_document_to_fields() test fails.
+	 */
+	@Test
+	void test_conversion_of_document_to_fields() throws Exception {
+		ObjectId id = new ObjectId();
+		Document document = new Document("_id", id).append("price", 10.0);
+		
+		Map<String, Object> fields = AppUtils.documentToFields(document);
+		
+		assertEquals(fields.size(), 2);
+		assertEquals(fields.get("id"), id.toHexString());
+		assertEquals(fields.get("price"), 10.0);
+	}
+
+	/**
+	 * This unit-test case, test_conversion_of_document_to_dto, tests
+	 * the documentToDto() and dtoToDocument() methods.
+	 * 
+	 * @throws Exception The Exception when the test_conversion_of_document_to_dto() test fails.
+	 */
+	@Test
+	void test_conversion_of_document_to_dto() throws Exception {
+		ObjectId id = new ObjectId();
+		Document document = new Document("_id", id).append("productNum", "productNum00").append("name", "name00")
+				.append("price", 10).append("version", 2);
+		
+		ProductDto productDto = AppUtils.documentToDto(document);
+		
+		assertEquals(productDto.getId(), id.toHexString());
+		assertEquals(productDto.getProductNum(), "productNum00");
+		assertEquals(productDto.getName(), "name00");
+		assertEquals(productDto.getPrice(), 10.0);
+		assertEquals(productDto.getVersion(), 2L);
+		
+		// The hex id is written back as an ObjectId, as the Product mapping does.
+		Document written = AppUtils.dtoToDocument(productDto);
+		
+		assertEquals(written.get("_id"), id);
+		assertEquals(written.get("price"), 10.0);
+		assertEquals(written.get("version"), 2L);
+	}
 }
@@ -0,0 +1,90 @@
+package com.springbootcrudexample1.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import com.springbootcrudexample1.model.ProductDto;
+
+/**
+ * This class, ProductCursorTest, is the unit-test for the ProductCursor class. 
+ * It tests the encoding and decoding of the page cursors, methods:
+ * encodeId, decodeId, encodePriceId, decodePriceId.
+ * 
+ * @author seanea
+ *
+ */
+public class ProductCursorTest {
+	private ProductDto productDto = new ProductDto();
+
+	ProductCursorTest() {
+		productDto.setId("62bc4f3a9d1e8a2f5c7b1a23");
+		productDto.setProductNum("PRD-0005");
+		productDto.setPrice(0.1 + 0.2);
+	}
+
+	/**
+	 * This unit-test case, test_id_cursor_round_trip, tests
+	 * the encodeId() and decodeId() methods.
+	 * 
+	 * @throws Exception The Exception when the test_id_cursor_round_trip() test fails.
+	 */
+	@Test
+	void test_id_cursor_round_trip() throws Exception {
+		ProductCursor cursor = ProductCursor.decodeId(ProductCursor.encodeId(productDto));
+
+		assertEquals(cursor.getId(), productDto.getId());
+		assertNull(cursor.getPrice());
+	}
+
+	/**
+	 * This unit-test case, test_price_id_cursor_round_trip, tests
+	 * the encodePriceId() and decodePriceId() methods keep the exact price.
+	 * 
+	 * @throws Exception The Exception when the test_price_id_cursor_round_trip() test fails.
+	 */
+	@Test
+	void test_price_id_cursor_round_trip() throws Exception {
+		ProductCursor cursor = ProductCursor.decodePriceId(ProductCursor.encodePriceId(productDto));
+
+		assertEquals(cursor.getId(), productDto.getId());
+		assertEquals(cursor.getPrice(), productDto.getPrice());
+	}
+
+	/**
+	 * This unit-test case, test_search_cursors_round_trip, tests
+	 * the product number and the score and id cursors of the search pages.
+	 * 
+	 * @throws Exception The Exception when the test_search_cursors_round_trip() test fails.
+	 */
+	@Test
+	void test_search_cursors_round_trip() throws Exception {
+		ProductCursor productNumCursor = ProductCursor.decodeProductNum(ProductCursor.encodeProductNum(productDto));
+		ProductCursor scoreCursor = ProductCursor.decodeScoreId(ProductCursor.encodeScoreId(1.1, productDto.getId()));
+
+		assertEquals(productNumCursor.getProductNum(), productDto.getProductNum());
+		assertEquals(scoreCursor.getScore(), 1.1);
+		assertEquals(scoreCursor.getId(), productDto.getId());
+		assertNull(scoreCursor.getPrice());
+		assertThrows(IllegalArgumentException.class,
+				() -> ProductCursor.decodeScoreId(ProductCursor.encodePriceId(productDto)));
+		assertThrows(IllegalArgumentException.class, () -> ProductCursor.encodeProductNum(new ProductDto()));
+	}
+
+	/**
+	 * This unit-test case, test_invalid_cursors, tests
+	 * the decodeId() and decodePriceId() methods reject the wrong cursors.
+	 * 
+	 * @throws Exception The Exception when the test_invalid_cursors() test fails.
+	 */
+	@Test
+	void test_invalid_cursors() throws Exception {
+		assertThrows(IllegalArgumentException.class, () -> ProductCursor.decodeId("%%%"));
+		assertThrows(IllegalArgumentException.class,
+				() -> ProductCursor.decodeId(ProductCursor.encodePriceId(productDto)));
+		assertThrows(IllegalArgumentException.class,
+				() -> ProductCursor.decodePriceId(ProductCursor.encodeId(productDto)));
+	}
+}
@@ -0,0 +1,100 @@
+package com.springbootcrudexample1.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springbootcrudexample1.model.ProductDto;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * This class, ProductDtoJsonEncoderTest, is the unit-test for the
+ * ProductDtoJsonEncoder class. It tests the JSON written is the same as the
+ * Jackson one, for a product, an array and an NDJSON stream of products.
+ *
+ * @author seanea
+ *
+ */
+public class ProductDtoJsonEncoderTest {
+	private static final ResolvableType PRODUCT_DTO_TYPE = ResolvableType.forClass(ProductDto.class);
+
+	private ProductDtoJsonEncoder encoder = new ProductDtoJsonEncoder();
+	private DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+	private ObjectMapper objectMapper = new ObjectMapper();
+	private ProductDto productDto = new ProductDto("id00", "PRD-\"00\"\\", "Bouteille \u00e9t\u00e9 \u2603 \uD83D\uDE00\n\u0001",
+			24.99, 3L);
+	private ProductDto nullsDto = new ProductDto(null, null, null, Double.NaN, null);
+
+	/**
+	 * This unit-test case, test_encode_value_as_jackson, tests
+	 * the encodeValue() method writes the same JSON as Jackson, with escaped,
+	 * non-ASCII and null fields.
+	 *
+	 * @throws Exception The Exception when the test_encode_value_as_jackson() test fails.
+	 */
+	@Test
+	void test_encode_value_as_jackson() throws Exception {
+		assertEquals(read(encoder.encodeValue(productDto, bufferFactory, PRODUCT_DTO_TYPE, MediaType.APPLICATION_JSON,
+				Map.of())), objectMapper.writeValueAsString(productDto));
+		assertEquals(read(encoder.encodeValue(nullsDto, bufferFactory, PRODUCT_DTO_TYPE, MediaType.APPLICATION_JSON,
+				Map.of())), objectMapper.writeValueAsString(nullsDto));
+	}
+
+	/**
+	 * This unit-test case, test_encode_flux_as_array_and_ndjson, tests
+	 * the encode() method writes a Flux as a JSON array, empty included, and
+	 * as one product per line for NDJSON.
+	 *
+	 * @throws Exception The Exception when the test_encode_flux_as_array_and_ndjson() test fails.
+	 */
+	@Test
+	void test_encode_flux_as_array_and_ndjson() throws Exception {
+		assertEquals(encode(Flux.just(productDto, nullsDto), MediaType.APPLICATION_JSON),
+				objectMapper.writeValueAsString(List.of(productDto, nullsDto)));
+		assertEquals(encode(Flux.empty(), MediaType.APPLICATION_JSON), "[]");
+		assertEquals(encode(Flux.just(productDto, nullsDto), MediaType.APPLICATION_NDJSON),
+				objectMapper.writeValueAsString(productDto) + "\n" + objectMapper.writeValueAsString(nullsDto) + "\n");
+		assertEquals(encode(Mono.just(productDto), MediaType.APPLICATION_JSON),
+				objectMapper.writeValueAsString(productDto));
+	}
+
+	/**
+	 * This unit-test case, test_can_encode_only_product_dto_json, tests
+	 * the canEncode() method leaves the other types and media types to the
+	 * other encoders.
+	 *
+	 * @throws Exception The Exception when the test_can_encode_only_product_dto_json() test fails.
+	 */
+	@Test
+	void test_can_encode_only_product_dto_json() throws Exception {
+		assertTrue(encoder.canEncode(PRODUCT_DTO_TYPE, MediaType.APPLICATION_JSON));
+		assertFalse(encoder.canEncode(ResolvableType.forClass(Object.class), MediaType.APPLICATION_JSON));
+		assertFalse(encoder.canEncode(PRODUCT_DTO_TYPE, MediaType.APPLICATION_XML));
+	}
+
+	private String encode(Publisher<ProductDto> products, MediaType mediaType) {
+		return DataBufferUtils.join(encoder.encode(products, bufferFactory, PRODUCT_DTO_TYPE, mediaType, Map.of()))
+				.map(this::read).block();
+	}
+
+	private String read(DataBuffer buffer) {
+		String json = buffer.toString(StandardCharsets.UTF_8);
+		DataBufferUtils.release(buffer);
+		return json;
+	}
+}